@@ -0,0 +1,27 @@
+package ru.bloof.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks selected by the usual JMH command line with the allocation profiler and writes
+ * the results as JSON, {@code jmh-result.json} unless {@code -rff} says otherwise, so they can be
+ * compared between versions.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class Benchmarks {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(options)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(options.getResultFormat().orElse(ResultFormatType.JSON))
+                .build()).run();
+    }
+}
@@ -0,0 +1,47 @@
+package ru.bloof.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.bloof.device.EntropySource;
+import ru.bloof.device.SyntheticSource;
+import ru.bloof.prng.DeviceRandom;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to gather a seed from {@link DeviceRandom} fed by synthetic key events, which measures the event
+ * path and the conditioning rather than how fast a user types.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeviceRandomBenchmark {
+    @Param({"32", "512"})
+    public int seedBytes;
+
+    private DeviceRandom rnd;
+    private byte[] seed;
+
+    @Setup
+    public void setUp() {
+        // credited as if they were real device events, so the conditioning pipeline is what gets measured
+        rnd = new DeviceRandom(new SyntheticSource(new Random(42), 0, 1000, EntropySource.MAX_CREDIT_PER_EVENT));
+        seed = new byte[seedBytes];
+    }
+
+    @TearDown
+    public void tearDown() {
+        rnd.close();
+    }
+
+    @Benchmark
+    public byte[] seed() {
+        rnd.nextBytes(seed);
+        return seed;
+    }
+}
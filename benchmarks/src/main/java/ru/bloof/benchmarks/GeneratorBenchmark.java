@@ -0,0 +1,96 @@
+package ru.bloof.benchmarks;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.openjdk.jmh.annotations.*;
+import ru.bloof.prng.BBSRandom;
+import ru.bloof.prng.BlumModulus;
+import ru.bloof.prng.MultiLaneBBSRandom;
+
+import java.security.SecureRandom;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of BBS generators of different modulus sizes, also with 8 lanes squared in lockstep, next to the JDK
+ * generators and Mersenne Twister.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneratorBenchmark {
+    private static final int LANES = 8;
+
+    @Param({"bbs-512", "bbs-1024", "bbs-2048", "bbs-4096", "bbs-crt-1024", "bbs-crt-2048", "bbs-crt-4096",
+            "bbs-lanes-1024", "bbs-lanes-2048", "random", "secure", "mersenne"})
+    public String generator;
+
+    @Param({"4096"})
+    public int bytes;
+
+    private Random rnd;
+    private byte[] buffer;
+
+    @Setup
+    public void setUp() {
+        rnd = create(generator);
+        buffer = new byte[bytes];
+    }
+
+    static Random create(String generator) {
+        if (generator.startsWith("bbs-lanes-")) {
+            int bits = Integer.parseInt(generator.substring(10));
+            return new MultiLaneBBSRandom(BlumModulus.generate(bits, new Random(bits)), new Random(bits), 1, LANES);
+        }
+        if (generator.startsWith("bbs-crt-")) {
+            int bits = Integer.parseInt(generator.substring(8));
+            return BBSRandom.builder().bits(bits).seedSource(new Random(bits)).crt().build();
+        }
+        if (generator.startsWith("bbs-")) {
+            int bits = Integer.parseInt(generator.substring(4));
+            return BBSRandom.builder().bits(bits).seedSource(new Random(bits)).build();
+        }
+        switch (generator) {
+            case "random":
+                return new Random(42);
+            case "secure":
+                return new SecureRandom();
+            case "mersenne":
+                return new Random() {
+                    final MersenneTwister twister = new MersenneTwister(42);
+
+                    @Override
+                    protected int next(int bits) {
+                        return twister.nextInt() >>> (32 - bits);
+                    }
+
+                    @Override
+                    public void nextBytes(byte[] data) {
+                        twister.nextBytes(data);
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unknown generator " + generator);
+        }
+    }
+
+    @Benchmark
+    public int nextInt() {
+        return rnd.nextInt();
+    }
+
+    @Benchmark
+    public long nextLong() {
+        return rnd.nextLong();
+    }
+
+    @Benchmark
+    public byte[] nextBytes() {
+        rnd.nextBytes(buffer);
+        return buffer;
+    }
+}
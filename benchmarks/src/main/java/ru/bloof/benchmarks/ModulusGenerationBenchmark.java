@@ -0,0 +1,32 @@
+package ru.bloof.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.bloof.prng.BlumModulus;
+import ru.bloof.prng.ModulusGenerator;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to find a Blum modulus. The search time depends on where the random starting points fall, so every
+ * iteration uses a new seed and the average over many iterations is what matters.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ModulusGenerationBenchmark {
+    @Param({"512", "1024", "2048"})
+    public int bits;
+
+    private final Random seeds = new Random(42);
+
+    @Benchmark
+    public BlumModulus generate() {
+        return ModulusGenerator.getDefault().generate(bits, new Random(seeds.nextLong()));
+    }
+}
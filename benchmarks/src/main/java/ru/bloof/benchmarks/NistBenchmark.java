@@ -0,0 +1,47 @@
+package ru.bloof.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.bloof.nist.BitAccumulator;
+import ru.bloof.nist.NistTest;
+import ru.bloof.nist.StreamingSuite;
+import ru.bloof.nist.TestResult;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of every SP 800-22 test over inputs from 1 Mbit to 1 Gbit, with the parameters recommended for
+ * 1 Mbit sequences. The input is generated once per trial and not measured.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class NistBenchmark {
+    private static final int SEQUENCE_BITS = 1 << 20;
+
+    @Param
+    public NistTest test;
+
+    @Param({"1048576", "33554432", "1073741824"})
+    public long bits;
+
+    private byte[] data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = new byte[(int) (bits / 8)];
+        new Random(42).nextBytes(data);
+    }
+
+    @Benchmark
+    public TestResult run() {
+        BitAccumulator accumulator = StreamingSuite.create(test, SEQUENCE_BITS);
+        accumulator.update(data);
+        return accumulator.finish();
+    }
+}
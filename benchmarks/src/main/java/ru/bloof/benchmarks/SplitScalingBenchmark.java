@@ -0,0 +1,57 @@
+package ru.bloof.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.bloof.prng.BBSRandom;
+import ru.bloof.prng.SplittableBBSRandom;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Total throughput of generators split off one root, one per benchmark thread. Run with {@code -t 1}, {@code -t 2}
+ * and so on up to the number of cores: with perfect scaling the score grows linearly with the thread count.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SplitScalingBenchmark {
+    @State(Scope.Benchmark)
+    public static class Root {
+        @Param({"1024", "2048"})
+        public int bits;
+
+        SplittableBBSRandom root;
+
+        @Setup
+        public void setUp() {
+            root = BBSRandom.builder().bits(bits).seedSource(new Random(bits)).buildSplittable();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Child {
+        @Param({"4096"})
+        public int bytes;
+
+        SplittableBBSRandom rnd;
+        byte[] buffer;
+
+        @Setup
+        public void setUp(Root root) {
+            synchronized (root.root) {
+                rnd = root.root.split();
+            }
+            buffer = new byte[bytes];
+        }
+    }
+
+    @Benchmark
+    public byte[] nextBytes(Child child) {
+        child.rnd.nextBytes(child.buffer);
+        return child.buffer;
+    }
+}
@@ -0,0 +1,124 @@
+package ru.bloof.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The event classes, only loaded through {@link Events} once it has found {@code jdk.jfr}. Durations are measured
+ * by the callers and recorded as a field, the events themselves are instant.
+ * <p>
+ * Compiled by its own execution of the compiler plugin, against the {@code jdk.jfr} of the building JDK.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+final class JfrEvents implements EventSink {
+    JfrEvents() {
+    }
+
+    @Override
+    public void modulusGenerated(int bits, int rebuilds, long nanos) {
+        ModulusGeneration event = new ModulusGeneration();
+        if (event.shouldCommit()) {
+            event.bits = bits;
+            event.rebuilds = rebuilds;
+            event.elapsed = nanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void seeded(String source, int bytes, long nanos) {
+        Seeding event = new Seeding();
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.bytes = bytes;
+            event.elapsed = nanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void reseeded(int entropyBytes, long latencyNanos) {
+        Reseed event = new Reseed();
+        if (event.shouldCommit()) {
+            event.entropyBytes = entropyBytes;
+            event.latency = latencyNanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void testFinished(String test, long bits, double pValue, boolean passed, long nanos) {
+        StatisticalTest event = new StatisticalTest();
+        if (event.shouldCommit()) {
+            event.test = test;
+            event.bits = bits;
+            event.pValue = pValue;
+            event.passed = passed;
+            event.elapsed = nanos;
+            event.commit();
+        }
+    }
+
+    @Name("ru.bloof.ModulusGeneration")
+    @Label("Modulus Generation")
+    @Category("BBS")
+    @StackTrace(false)
+    static final class ModulusGeneration extends Event {
+        @Label("Bits")
+        int bits;
+        @Label("Rebuilt Primes")
+        int rebuilds;
+        @Label("Elapsed")
+        @Timespan
+        long elapsed;
+    }
+
+    @Name("ru.bloof.Seeding")
+    @Label("Seeding")
+    @Category("BBS")
+    @StackTrace(false)
+    static final class Seeding extends Event {
+        @Label("Source")
+        String source;
+        @Label("Bytes")
+        int bytes;
+        @Label("Waited")
+        @Timespan
+        long elapsed;
+    }
+
+    @Name("ru.bloof.Reseed")
+    @Label("Reseed")
+    @Category("BBS")
+    @StackTrace(false)
+    static final class Reseed extends Event {
+        @Label("Entropy Bytes")
+        int entropyBytes;
+        @Label("Latency")
+        @Timespan
+        long latency;
+    }
+
+    @Name("ru.bloof.StatisticalTest")
+    @Label("Statistical Test")
+    @Category("BBS")
+    @StackTrace(false)
+    static final class StatisticalTest extends Event {
+        @Label("Test")
+        String test;
+        @Label("Bits")
+        long bits;
+        @Label("Smallest P-Value")
+        double pValue;
+        @Label("Passed")
+        boolean passed;
+        @Label("Elapsed")
+        @Timespan
+        long elapsed;
+    }
+}
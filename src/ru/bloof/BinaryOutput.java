@@ -0,0 +1,189 @@
+package ru.bloof;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes generator output as raw bytes, cut into fixed-size chunks that several producer threads fill at once.
+ * Producer k fills chunks k, k + P, k + 2P, ..., so a producer that can seek in its stream makes the
+ * output the same whatever the number of producers.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public final class BinaryOutput {
+    private static final int BUFFERS_PER_PRODUCER = 3;
+    private static final long MAPPED_REGION_SIZE = 1 << 30;
+
+    /**
+     * Fills a chunk, called by one thread only and for increasing chunk numbers.
+     */
+    public interface Producer {
+        void fill(long chunk, ByteBuffer buffer);
+    }
+
+    private final List<Producer> producers;
+    private final int chunkSize;
+
+    public BinaryOutput(List<Producer> producers, int chunkSize) {
+        if (producers.isEmpty() || chunkSize < 1) {
+            throw new IllegalArgumentException("Need at least one producer and a positive chunk size");
+        }
+        this.producers = producers;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Writes {@code bytes} bytes, or until the channel is closed by the reader when {@code bytes} is negative.
+     * Chunks are written in order from direct buffers, at most a few per producer are held at a time.
+     *
+     * @return number of bytes written
+     */
+    public long writeTo(WritableByteChannel channel, long bytes) throws IOException {
+        int count = producers.size();
+        List<BlockingQueue<ByteBuffer>> filled = new ArrayList<>(count);
+        List<BlockingQueue<ByteBuffer>> free = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            filled.add(new ArrayBlockingQueue<>(BUFFERS_PER_PRODUCER));
+            BlockingQueue<ByteBuffer> buffers = new ArrayBlockingQueue<>(BUFFERS_PER_PRODUCER);
+            for (int k = 0; k < BUFFERS_PER_PRODUCER; k++) {
+                buffers.add(ByteBuffer.allocateDirect(chunkSize));
+            }
+            free.add(buffers);
+        }
+        AtomicBoolean stopped = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            threads.add(start("producer-" + i, () -> {
+                try {
+                    for (long chunk = index; !stopped.get() && (bytes < 0 || chunk * chunkSize < bytes);
+                         chunk += count) {
+                        ByteBuffer buffer = free.get(index).take();
+                        buffer.clear();
+                        if (bytes >= 0) {
+                            buffer.limit((int) Math.min(chunkSize, bytes - chunk * chunkSize));
+                        }
+                        producers.get(index).fill(chunk, buffer);
+                        buffer.flip();
+                        filled.get(index).put(buffer);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                    stopped.set(true);
+                }
+            }));
+        }
+        long written = 0;
+        try {
+            for (long chunk = 0; bytes < 0 || written < bytes; chunk++) {
+                BlockingQueue<ByteBuffer> queue = filled.get((int) (chunk % count));
+                ByteBuffer buffer;
+                while ((buffer = queue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                    if (failure.get() != null) {
+                        throw rethrow(failure.get());
+                    }
+                }
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer);
+                }
+                free.get((int) (chunk % count)).put(buffer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopped.set(true);
+            threads.forEach(Thread::interrupt);
+        }
+        return written;
+    }
+
+    /**
+     * Writes {@code bytes} bytes into the file, sized up front and mapped into memory, every producer filling
+     * its chunks in place. The mapped regions are flushed to the disk before returning.
+     */
+    public long writeTo(Path file, long bytes) throws IOException {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Mapped output needs the number of bytes");
+        }
+        // regions hold whole chunks, so a chunk never spans two of them
+        long regionSize = Math.max(chunkSize, MAPPED_REGION_SIZE / chunkSize * chunkSize);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw");
+             FileChannel channel = raf.getChannel()) {
+            raf.setLength(bytes);
+            List<MappedByteBuffer> regions = new ArrayList<>();
+            for (long position = 0; position < bytes; position += regionSize) {
+                regions.add(channel.map(FileChannel.MapMode.READ_WRITE, position,
+                        Math.min(regionSize, bytes - position)));
+            }
+            int count = producers.size();
+            long chunksPerRegion = regionSize / chunkSize;
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            List<Thread> threads = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int index = i;
+                threads.add(start("producer-" + i, () -> {
+                    try {
+                        for (long chunk = index; chunk * chunkSize < bytes && failure.get() == null; chunk += count) {
+                            ByteBuffer region = regions.get((int) (chunk / chunksPerRegion)).duplicate();
+                            int offset = (int) (chunk % chunksPerRegion * chunkSize);
+                            region.position(offset).limit((int) Math.min(region.capacity(), (long) offset + chunkSize));
+                            producers.get(index).fill(chunk, region.slice());
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while writing " + file, e);
+                }
+            }
+            if (failure.get() != null) {
+                throw rethrow(failure.get());
+            }
+            for (MappedByteBuffer region : regions) {
+                region.force();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Rethrows what a producer failed with on the writing thread, checked exceptions wrapped.
+     */
+    private static RuntimeException rethrow(Throwable failure) {
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        throw new IllegalStateException("Producer failed", failure);
+    }
+
+    private static Thread start(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
@@ -1,16 +1,194 @@
 package ru.bloof;
 
+import org.apache.commons.math3.random.MersenneTwister;
 import ru.bloof.prng.BBSRandom;
+import ru.bloof.prng.DeviceRandom;
+import ru.bloof.prng.SplittableBBSRandom;
 
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
+/**
+ * Streams generator output as raw bytes for external test batteries, for example
+ * {@code java ru.bloof.Main --bits 1024 | dieharder -g 200 -a}.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
 public class Main {
-    public static void main(String[] args) {
-        BBSRandom rnd = new BBSRandom(32, new Random());
-        System.out.println(rnd.nextInt());
-        System.out.println(rnd.nextInt());
-        System.out.println(rnd.nextInt());
-        System.out.println(rnd.nextInt());
-        System.out.println(rnd.nextInt());
+    private static final String USAGE = "Usage: Main [options]\n"
+            + "  --generator bbs|device|mersenne  generator to stream, bbs by default\n"
+            + "  --bits N             modulus size for bbs, 1024 by default\n"
+            + "  --bits-per-step N    output bits taken from every bbs state, 0 for the maximum, 1 by default\n"
+            + "  --crt                square modulo the factors of the modulus\n"
+            + "  --bytes N[k|m|g]     number of bytes, unlimited by default\n"
+            + "  --threads N          producer threads for bbs, the number of processors by default\n"
+            + "  --chunk N[k|m|g]     bytes produced at a time by one thread, a multiple of 4, 64k by default\n"
+            + "  --output FILE        memory-mapped output file, needs --bytes; stdout by default";
+
+    public static void main(String[] args) throws IOException {
+        String generator = "bbs";
+        int bits = 1024;
+        int bitsPerStep = 1;
+        boolean crt = false;
+        long bytes = -1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int chunk = 1 << 16;
+        String output = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--generator":
+                        generator = args[++i];
+                        break;
+                    case "--bits":
+                        bits = Integer.parseInt(args[++i]);
+                        break;
+                    case "--bits-per-step":
+                        bitsPerStep = Integer.parseInt(args[++i]);
+                        break;
+                    case "--crt":
+                        crt = true;
+                        break;
+                    case "--bytes":
+                        bytes = parseSize(args[++i]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--chunk":
+                        chunk = (int) parseSize(args[++i]);
+                        break;
+                    case "--output":
+                        output = args[++i];
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (chunk < 4 || chunk % 4 != 0) {
+                throw new IllegalArgumentException("--chunk must be a positive multiple of 4");
+            }
+            if (output != null && bytes < 0) {
+                throw new IllegalArgumentException("--output needs --bytes");
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(e.getMessage() != null ? e.getMessage() : "Missing option value");
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        List<BinaryOutput.Producer> producers = new ArrayList<>();
+        switch (generator) {
+            case "bbs":
+                BBSRandom.Builder builder = BBSRandom.builder().bits(bits).seedSource(new SecureRandom());
+                if (bitsPerStep == 0) {
+                    builder.maxBitsPerStep();
+                } else {
+                    builder.bitsPerStep(bitsPerStep);
+                }
+                if (crt) {
+                    builder.crt();
+                }
+                SplittableBBSRandom root = builder.buildSplittable();
+                long chunkBits = 8L * chunk;
+                for (int i = 0; i < threads; i++) {
+                    SplittableBBSRandom rnd = root.copy();
+                    producers.add((index, buffer) -> {
+                        rnd.seek(index * chunkBits);
+                        rnd.nextBytes(buffer);
+                    });
+                }
+                break;
+            case "device":
+                producers.add(sequential(new DeviceRandom()));
+                break;
+            case "mersenne":
+                MersenneTwister twister = new MersenneTwister();
+                producers.add(sequential(new Random() {
+                    @Override
+                    public void nextBytes(byte[] data) {
+                        twister.nextBytes(data);
+                    }
+                }));
+                break;
+            default:
+                System.err.println("Unknown generator " + generator);
+                System.err.println(USAGE);
+                System.exit(2);
+                return;
+        }
+
+        BinaryOutput out = new BinaryOutput(producers, chunk);
+        long start = System.nanoTime();
+        long written;
+        if (output != null) {
+            written = out.writeTo(Paths.get(output), bytes);
+        } else {
+            try (FileChannel stdout = new FileOutputStream(FileDescriptor.out).getChannel()) {
+                written = out.writeTo(stdout, bytes);
+            } catch (IOException e) {
+                if (!isBrokenPipe(e)) {
+                    System.err.println("Cannot write to stdout: " + e.getMessage());
+                    System.exit(1);
+                }
+                // the reader has closed the pipe
+                written = -1;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (written >= 0) {
+            System.err.printf("%d bytes in %.3f s, %.0f bytes/s%n", written, seconds, written / seconds);
+        }
+    }
+
+    /**
+     * Whether the write failed because the reader closed the pipe. The JDK reports that only in the message.
+     */
+    private static boolean isBrokenPipe(IOException e) {
+        return e.getMessage() != null && e.getMessage().contains("Broken pipe");
+    }
+
+    /**
+     * Producer for a generator that can only go forward, it must be the only one.
+     */
+    private static BinaryOutput.Producer sequential(Random rnd) {
+        return new BinaryOutput.Producer() {
+            private byte[] data = new byte[0];
+
+            @Override
+            public void fill(long chunk, ByteBuffer buffer) {
+                if (data.length != buffer.remaining()) {
+                    data = new byte[buffer.remaining()];
+                }
+                rnd.nextBytes(data);
+                buffer.put(data);
+            }
+        };
+    }
+
+    private static long parseSize(String value) {
+        long multiplier = 1;
+        switch (Character.toLowerCase(value.charAt(value.length() - 1))) {
+            case 'k':
+                multiplier = 1L << 10;
+                break;
+            case 'm':
+                multiplier = 1L << 20;
+                break;
+            case 'g':
+                multiplier = 1L << 30;
+                break;
+        }
+        String number = multiplier == 1 ? value : value.substring(0, value.length() - 1);
+        return Long.parseLong(number) * multiplier;
     }
 }
@@ -1,42 +1,62 @@
 package ru.bloof.device;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
 
 /**
+ * Listener of an {@link EntropySource}, by default all readable {@code /dev/input/event*} devices.
+ * <p>
+ * Subclasses should use {@link #BaseDeviceListener(EntropySource)} and call {@link #start()} at the end of their
+ * own constructor, so the reader threads never see a partly constructed listener.
+ *
  * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
  */
 public abstract class BaseDeviceListener implements DeviceEventListener {
-    protected final ExecutorService executor;
+    /**
+     * Kept for subclasses written when the device readers ran on it. The readers now run on the threads of
+     * {@link #source}, this pool only runs what subclasses submit to it and is shut down by {@link #close()}.
+     *
+     * @deprecated use threads of your own
+     */
+    @Deprecated
+    protected final ExecutorService executor = Executors.newCachedThreadPool(ReaderThreads.named("device-listener"));
+    protected final EntropySource source;
+    private boolean started;
 
+    /**
+     * Starts reading all input devices right away, before a subclass constructor has run.
+     *
+     * @deprecated publishes the listener to the reader threads while it is being constructed, use
+     * {@link #BaseDeviceListener(EntropySource)} and {@link #start()}
+     */
+    @Deprecated
     public BaseDeviceListener() {
-        List<File> devices;
-        try {
-            devices = Files.walk(Paths.get("/dev/input"))
-                    .map(Path::toFile)
-                    .filter(file -> file.getName().startsWith("event"))
-                    .filter(File::canRead)
-                    .collect(Collectors.toList());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-        if (devices.isEmpty()) {
-            throw new RuntimeException("No input devices");
-        }
-        executor = Executors.newFixedThreadPool(devices.size());
-        for (File f : devices) {
-            executor.execute(new DeviceReader(f, this));
+        this(new EvdevSource());
+        start();
+    }
+
+    /**
+     * Listener of the source, which is not started until {@link #start()}.
+     */
+    protected BaseDeviceListener(EntropySource source) {
+        this.source = source;
+    }
+
+    /**
+     * Starts delivering events to this listener.
+     *
+     * @throws IllegalStateException if already started
+     */
+    protected final synchronized void start() {
+        if (started) {
+            throw new IllegalStateException("Listener is already started");
         }
+        started = true;
+        source.start(this);
     }
 
     public void close() {
+        source.close();
         executor.shutdownNow();
     }
 }
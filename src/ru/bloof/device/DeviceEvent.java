@@ -1,5 +1,6 @@
 package ru.bloof.device;
 
+import java.nio.ByteBuffer;
 import java.nio.ShortBuffer;
 
 /**
@@ -21,6 +22,22 @@ public class DeviceEvent {
         this.value = value;
     }
 
+    /**
+     * Decodes one {@code struct input_event} at the buffer position, the buffer must be in native byte order.
+     */
+    public DeviceEvent(ByteBuffer bb) {
+        timeSec = bb.getLong();
+        timeUsec = bb.getLong();
+        type = bb.getShort();
+        code = bb.getShort();
+        value = bb.getInt();
+    }
+
+    /**
+     * @deprecated sign-extends the low halves into the high ones and assumes big-endian halves,
+     * use {@link #DeviceEvent(ByteBuffer)} or {@link DeviceEventBatch}.
+     */
+    @Deprecated
     public DeviceEvent(ShortBuffer sb) {
         short a, b, c, d;
         a = sb.get();
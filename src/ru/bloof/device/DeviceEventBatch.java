@@ -0,0 +1,62 @@
+package ru.bloof.device;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Read-only view over consecutive {@code struct input_event} records in a native-order buffer.
+ * The reader reuses the view and the buffer, so a batch is only valid during
+ * {@link DeviceEventBatchListener#onEvents(DeviceEventBatch)}.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public final class DeviceEventBatch {
+    private final ByteBuffer buffer;
+    private int offset, size;
+
+    DeviceEventBatch(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    void reset(int offset, int size) {
+        this.offset = offset;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTimeSec(int i) {
+        return buffer.getLong(position(i));
+    }
+
+    public long getTimeUsec(int i) {
+        return buffer.getLong(position(i) + 8);
+    }
+
+    public short getType(int i) {
+        return buffer.getShort(position(i) + 16);
+    }
+
+    public short getCode(int i) {
+        return buffer.getShort(position(i) + 18);
+    }
+
+    public int getValue(int i) {
+        return buffer.getInt(position(i) + 20);
+    }
+
+    /**
+     * Copies the event out of the batch.
+     */
+    public DeviceEvent getEvent(int i) {
+        return new DeviceEvent(getTimeSec(i), getTimeUsec(i), getType(i), getCode(i), getValue(i));
+    }
+
+    private int position(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Event " + i + " of " + size);
+        }
+        return offset + i * DeviceReader.EVENT_SIZE;
+    }
+}
@@ -0,0 +1,17 @@
+package ru.bloof.device;
+
+/**
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public interface DeviceEventBatchListener {
+    /**
+     * Called from the reader thread with all events of one read, the batch must not be kept after return.
+     */
+    void onEvents(DeviceEventBatch batch);
+
+    /**
+     * Called from the reader thread after its last batch, when the device is gone or reading was stopped.
+     */
+    default void onStopped() {
+    }
+}
@@ -1,8 +1,17 @@
 package ru.bloof.device;
 
 /**
+ * Listener of single events, every event of a batch is copied into its own {@link DeviceEvent}.
+ *
  * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
  */
-public interface DeviceEventListener {
+public interface DeviceEventListener extends DeviceEventBatchListener {
     void onEvent(DeviceEvent event);
+
+    @Override
+    default void onEvents(DeviceEventBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            onEvent(batch.getEvent(i));
+        }
+    }
 }
@@ -1,43 +1,83 @@
 package ru.bloof.device;
 
-import java.io.*;
+import ru.bloof.metrics.Counter;
+import ru.bloof.metrics.Metrics;
+
+import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 /**
+ * Reads raw {@code struct input_event} records. Every blocking read takes as many events as the device
+ * has queued, up to {@link #EVENTS_PER_READ}, into one reusable direct buffer.
+ *
  * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
  */
 public class DeviceReader implements Runnable {
-    private static final int EVENT_SIZE = 24;
-    private static final int POLL_PERIOD = 100;
+    public static final int EVENT_SIZE = 24;
+    public static final int EVENTS_PER_READ = 64;
     private final File file;
-    private final DeviceEventListener listener;
+    private final DeviceEventBatchListener listener;
+    private final long readIntervalNanos;
+    private final Counter events;
+
+    public DeviceReader(File file, DeviceEventBatchListener listener) {
+        this(file, listener, 0);
+    }
 
+    /**
+     * Kept for callers compiled against the single-event constructor.
+     *
+     * @deprecated use {@link #DeviceReader(File, DeviceEventBatchListener)}, which takes the same listener
+     */
+    @Deprecated
     public DeviceReader(File file, DeviceEventListener listener) {
+        this(file, (DeviceEventBatchListener) listener);
+    }
+
+    /**
+     * @param readIntervalNanos minimal time between reads, for files that never block like {@code /dev/urandom}
+     */
+    public DeviceReader(File file, DeviceEventBatchListener listener, long readIntervalNanos) {
         this.file = file;
         this.listener = listener;
+        this.readIntervalNanos = readIntervalNanos;
+        events = Metrics.counter("device.events." + file.getName());
     }
 
     @Override
     public void run() {
-        byte[] eventData = new byte[EVENT_SIZE];
-        try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
-            while (!Thread.interrupted()) {
-                try {
-                    while (input.read(eventData) != EVENT_SIZE) {
-                        Thread.sleep(POLL_PERIOD);
-                    }
-                } catch (IOException e) {
-                    continue;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(EVENT_SIZE * EVENTS_PER_READ).order(ByteOrder.nativeOrder());
+        DeviceEventBatch batch = new DeviceEventBatch(buffer);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+                buffer.flip();
+                int count = buffer.remaining() / EVENT_SIZE;
+                if (count > 0) {
+                    batch.reset(buffer.position(), count);
+                    listener.onEvents(batch);
+                    events.add(count);
+                    buffer.position(buffer.position() + count * EVENT_SIZE);
+                }
+                buffer.compact();
+                if (readIntervalNanos > 0) {
+                    Thread.sleep(readIntervalNanos / 1_000_000, (int) (readIntervalNanos % 1_000_000));
                 }
-                ByteBuffer bb = ByteBuffer.wrap(eventData);
-                DeviceEvent event = new DeviceEvent(bb.asShortBuffer());
-                listener.onEvent(event);
             }
-        } catch (InterruptedException e) {
+        } catch (ClosedByInterruptException | InterruptedException e) {
             Thread.currentThread().interrupt();
         } catch (IOException e) {
-            System.err.println("Error opening file");
+            System.err.println("Error reading " + file);
             e.printStackTrace();
+        } finally {
+            listener.onStopped();
         }
     }
 }
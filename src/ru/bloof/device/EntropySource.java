@@ -0,0 +1,32 @@
+package ru.bloof.device;
+
+/**
+ * Source of input events that runs its own reader threads.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public interface EntropySource {
+    /**
+     * Most entropy an event is credited with from its timing, in bits, as in the Linux input pool.
+     */
+    int MAX_CREDIT_PER_EVENT = 11;
+
+    /**
+     * Starts delivering events to the listener from background threads and returns immediately.
+     */
+    void start(DeviceEventBatchListener listener);
+
+    /**
+     * Stops the reader threads.
+     */
+    void close();
+
+    /**
+     * Most entropy, in bits, an event of this source may be credited with from the timing of its timestamps.
+     * Sources whose timestamps are replayed or computed return 0: their events are still mixed in, but never
+     * counted as entropy.
+     */
+    default int getMaxCreditPerEvent() {
+        return MAX_CREDIT_PER_EVENT;
+    }
+}
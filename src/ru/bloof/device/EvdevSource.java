@@ -0,0 +1,201 @@
+package ru.bloof.device;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.stream.Collectors;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+
+/**
+ * Readable {@code /dev/input/event*} devices. Every device is read by its own thread taken from the thread
+ * factory, so on a JDK with virtual threads the readers may be virtual; one more thread watches
+ * {@code /dev/input} and attaches and detaches devices as they come and go.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class EvdevSource implements EntropySource {
+    private static final Path INPUT_DIR = Paths.get("/dev/input");
+    private static final int PERMISSION_RETRIES = 20;
+    private static final long PERMISSION_RETRY_MILLIS = 100;
+    private final Path inputDir;
+    private final ThreadFactory threadFactory;
+    private final Map<Path, Thread> readers = new ConcurrentHashMap<>();
+    private DeviceEventBatchListener listener;
+    private WatchService watchService;
+    private Thread watcher;
+    private volatile boolean closed;
+
+    public EvdevSource() {
+        this(ReaderThreads.named("evdev"));
+    }
+
+    public EvdevSource(ThreadFactory threadFactory) {
+        this(INPUT_DIR, threadFactory);
+    }
+
+    EvdevSource(Path inputDir, ThreadFactory threadFactory) {
+        this.inputDir = inputDir;
+        this.threadFactory = threadFactory;
+    }
+
+    public static List<File> findDevices() {
+        return findDevices(INPUT_DIR);
+    }
+
+    private static List<File> findDevices(Path inputDir) {
+        try {
+            return Files.walk(inputDir)
+                    .map(Path::toFile)
+                    .filter(EvdevSource::isEventDevice)
+                    .filter(File::canRead)
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static boolean isEventDevice(File file) {
+        return file.getName().startsWith("event");
+    }
+
+    /**
+     * Devices being read at the moment.
+     */
+    public List<Path> getDevices() {
+        return new ArrayList<>(readers.keySet());
+    }
+
+    @Override
+    public synchronized void start(DeviceEventBatchListener listener) {
+        this.listener = listener;
+        List<File> devices = findDevices(inputDir);
+        if (devices.isEmpty()) {
+            throw new RuntimeException("No input devices");
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            inputDir.register(watchService, ENTRY_CREATE, ENTRY_DELETE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        for (File f : devices) {
+            attach(f.toPath());
+        }
+        watcher = threadFactory.newThread(this::watch);
+        watcher.start();
+    }
+
+    private void watch() {
+        try {
+            while (!closed) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (!(event.context() instanceof Path)) {
+                        continue;
+                    }
+                    Path device = inputDir.resolve((Path) event.context());
+                    if (!isEventDevice(device.toFile())) {
+                        continue;
+                    }
+                    if (event.kind() == ENTRY_CREATE) {
+                        attach(device);
+                    } else if (event.kind() == ENTRY_DELETE) {
+                        detach(device);
+                    }
+                }
+                if (!key.reset()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ignored) {
+            // closed
+        }
+    }
+
+    private synchronized void attach(Path device) {
+        if (closed || readers.containsKey(device)) {
+            return;
+        }
+        Thread reader = threadFactory.newThread(() -> {
+            try {
+                if (awaitReadable(device.toFile())) {
+                    new DeviceReader(device.toFile(), listener).run();
+                }
+            } finally {
+                readers.remove(device, Thread.currentThread());
+            }
+        });
+        readers.put(device, reader);
+        reader.start();
+    }
+
+    /**
+     * A new node may be readable only after udev has set its permissions.
+     */
+    private static boolean awaitReadable(File device) {
+        for (int i = 0; i < PERMISSION_RETRIES && !device.canRead(); i++) {
+            try {
+                Thread.sleep(PERMISSION_RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return device.canRead();
+    }
+
+    private void detach(Path device) {
+        Thread reader = readers.remove(device);
+        if (reader != null) {
+            reader.interrupt();
+        }
+    }
+
+    /**
+     * Stops watching, interrupts all readers and waits until they have finished.
+     */
+    @Override
+    public void close() {
+        List<Thread> threads;
+        synchronized (this) {
+            closed = true;
+            threads = new ArrayList<>(readers.values());
+            if (watcher != null) {
+                threads.add(watcher);
+            }
+        }
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+        } catch (IOException ignored) {
+            // nothing to do while closing
+        }
+        threads.forEach(Thread::interrupt);
+        threads.remove(Thread.currentThread());
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
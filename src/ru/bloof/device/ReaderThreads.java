@@ -0,0 +1,24 @@
+package ru.bloof.device;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+final class ReaderThreads {
+    private ReaderThreads() {
+    }
+
+    /**
+     * Daemon threads named {@code prefix-N}, so a forgotten source does not keep the JVM alive.
+     */
+    static ThreadFactory named(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package ru.bloof.device;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Replays a file of raw 24-byte {@code struct input_event} records, as recorded from
+ * {@code /dev/input/event*}, once and as fast as the listener takes them. Replayed timestamps are known in
+ * advance, so the events are credited with no entropy.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class ReplaySource implements EntropySource {
+    private final Path file;
+    private ExecutorService executor;
+
+    public ReplaySource(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void start(DeviceEventBatchListener listener) {
+        executor = Executors.newSingleThreadExecutor(ReaderThreads.named("replay"));
+        executor.execute(new DeviceReader(file.toFile(), listener));
+    }
+
+    @Override
+    public int getMaxCreditPerEvent() {
+        return 0;
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ru.bloof.device;
+
+import ru.bloof.metrics.Counter;
+import ru.bloof.metrics.Metrics;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Key events generated in memory, with gaps of up to {@code maxGapUsec} microseconds between them.
+ * Meant for tests and benchmarks: the "entropy" is only as good as the given {@link Random}, so by default the
+ * events are credited with none.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class SyntheticSource implements EntropySource {
+    private static final Counter EVENTS = Metrics.counter("device.events.synthetic");
+    private final Random random;
+    private final long events;
+    private final int maxGapUsec;
+    private final int maxCreditPerEvent;
+    private ExecutorService executor;
+
+    /**
+     * @param events     number of events to produce, 0 for an endless source
+     * @param maxGapUsec largest gap between events, at least 1
+     */
+    public SyntheticSource(Random random, long events, int maxGapUsec) {
+        this(random, events, maxGapUsec, 0);
+    }
+
+    /**
+     * @param maxCreditPerEvent entropy to pretend the events carry, at most {@link #MAX_CREDIT_PER_EVENT}; only for
+     *                          measuring what consumes the events, as the output is not random with anything but 0
+     */
+    public SyntheticSource(Random random, long events, int maxGapUsec, int maxCreditPerEvent) {
+        if (maxCreditPerEvent < 0 || maxCreditPerEvent > MAX_CREDIT_PER_EVENT) {
+            throw new IllegalArgumentException("Credit must be in [0, " + MAX_CREDIT_PER_EVENT + "]: "
+                    + maxCreditPerEvent);
+        }
+        if (events < 0 || maxGapUsec < 1) {
+            throw new IllegalArgumentException("Event count must be non-negative and the gap positive: " + events
+                    + ", " + maxGapUsec);
+        }
+        this.random = random;
+        this.events = events;
+        this.maxGapUsec = maxGapUsec;
+        this.maxCreditPerEvent = maxCreditPerEvent;
+    }
+
+    @Override
+    public void start(DeviceEventBatchListener listener) {
+        executor = Executors.newSingleThreadExecutor(ReaderThreads.named("synthetic"));
+        executor.execute(() -> generate(listener));
+    }
+
+    private void generate(DeviceEventBatchListener listener) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(DeviceReader.EVENT_SIZE * DeviceReader.EVENTS_PER_READ)
+                .order(ByteOrder.nativeOrder());
+        DeviceEventBatch batch = new DeviceEventBatch(buffer);
+        long time = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        long produced = 0;
+        try {
+            while (!Thread.currentThread().isInterrupted() && (events == 0 || produced < events)) {
+                int count = (int) (events == 0 ? DeviceReader.EVENTS_PER_READ
+                        : Math.min(DeviceReader.EVENTS_PER_READ, events - produced));
+                buffer.clear();
+                for (int i = 0; i < count; i++) {
+                    time += 1 + random.nextInt(maxGapUsec);
+                    buffer.putLong(time / 1_000_000)
+                            .putLong(time % 1_000_000)
+                            .putShort(DeviceEvent.EV_KEY)
+                            .putShort((short) random.nextInt(128))
+                            .putInt(random.nextInt(3));
+                }
+                batch.reset(0, count);
+                listener.onEvents(batch);
+                EVENTS.add(count);
+                produced += count;
+            }
+        } finally {
+            listener.onStopped();
+        }
+    }
+
+    @Override
+    public int getMaxCreditPerEvent() {
+        return maxCreditPerEvent;
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ru.bloof.device;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reads {@code /dev/urandom} as if it were a stream of input events. It never blocks, so reads are
+ * paced to the given event rate.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class UrandomSource implements EntropySource {
+    private static final File URANDOM = new File("/dev/urandom");
+    private final int eventsPerSecond;
+    private ExecutorService executor;
+
+    public UrandomSource() {
+        this(1000);
+    }
+
+    /**
+     * @param eventsPerSecond upper bound of the event rate, 0 for none
+     */
+    public UrandomSource(int eventsPerSecond) {
+        this.eventsPerSecond = eventsPerSecond;
+    }
+
+    @Override
+    public void start(DeviceEventBatchListener listener) {
+        long interval = eventsPerSecond == 0 ? 0 : DeviceReader.EVENTS_PER_READ * 1_000_000_000L / eventsPerSecond;
+        executor = Executors.newSingleThreadExecutor(ReaderThreads.named("urandom"));
+        executor.execute(new DeviceReader(URANDOM, listener, interval));
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ru.bloof.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named process-wide counter, striped so that threads adding to it at once do not contend.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public final class Counter {
+    private final String name;
+    private final LongAdder adder = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void increment() {
+        adder.increment();
+    }
+
+    public void add(long x) {
+        adder.add(x);
+    }
+
+    public long get() {
+        return adder.sum();
+    }
+}
@@ -0,0 +1,17 @@
+package ru.bloof.metrics;
+
+/**
+ * Receiver of the events {@link Events} emits. The JDK Flight Recorder one is compiled apart from the rest of the
+ * library, from {@code src-jfr}, and looked up by name, so nothing else depends on {@code jdk.jfr}.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+interface EventSink {
+    void modulusGenerated(int bits, int rebuilds, long nanos);
+
+    void seeded(String source, int bytes, long nanos);
+
+    void reseeded(int entropyBytes, long latencyNanos);
+
+    void testFinished(String test, long bits, double pValue, boolean passed, long nanos);
+}
@@ -0,0 +1,57 @@
+package ru.bloof.metrics;
+
+/**
+ * Emits the library's JDK Flight Recorder events, in the "BBS" category of a recording. The event classes come from
+ * the separately compiled {@code ru.bloof.metrics.JfrEvents} and are only loaded when {@code jdk.jfr} is there; on
+ * a JVM without it, or from a build without that class, every method does nothing.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public final class Events {
+    private static final EventSink SINK = loadSink();
+
+    private Events() {
+    }
+
+    private static EventSink loadSink() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (EventSink) Class.forName("ru.bloof.metrics.JfrEvents").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param startNanos {@link System#nanoTime()} when the search started
+     */
+    public static void modulusGenerated(int bits, int rebuilds, long startNanos) {
+        if (SINK != null) {
+            SINK.modulusGenerated(bits, rebuilds, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * A generator waited for its seed source.
+     */
+    public static void seeded(String source, int bytes, long startNanos) {
+        if (SINK != null) {
+            SINK.seeded(source, bytes, System.nanoTime() - startNanos);
+        }
+    }
+
+    public static void reseeded(int entropyBytes, long latencyNanos) {
+        if (SINK != null) {
+            SINK.reseeded(entropyBytes, latencyNanos);
+        }
+    }
+
+    /**
+     * A statistical test finished, {@code startNanos} being when it got its first bits.
+     */
+    public static void testFinished(String test, long bits, double pValue, boolean passed, long startNanos) {
+        if (SINK != null) {
+            SINK.testFinished(test, bits, pValue, passed, System.nanoTime() - startNanos);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ru.bloof.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the process-wide counters. Counters are created on first use and kept for the life of the process,
+ * so classes look theirs up once and keep them in static fields.
+ * <p>
+ * Counters kept by the library:
+ * <ul>
+ * <li>{@code prng.squarings}, {@code prng.bits}: modular squarings done and output bits they produced, added by
+ * every generator after each {@code nextBytes} and every 1024 squarings otherwise</li>
+ * <li>{@code prng.reseeds}: seeds published by reseeders</li>
+ * <li>{@code device.events.<device>}: input events read from every device</li>
+ * <li>{@code device.bytes.queued}, {@code device.bytes.dropped}: conditioned entropy bytes stored for readers
+ * of {@code DeviceRandom} or lost because their buffer was full</li>
+ * <li>{@code nist.tests}: finished statistical tests</li>
+ * </ul>
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public final class Metrics {
+    private static final Map<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, Counter::new);
+    }
+
+    /**
+     * Current values of all counters, read one by one without stopping the threads that update them.
+     */
+    public static MetricsSnapshot snapshot() {
+        Map<String, Long> values = new TreeMap<>();
+        for (Counter counter : COUNTERS.values()) {
+            values.put(counter.getName(), counter.get());
+        }
+        return new MetricsSnapshot(System.nanoTime(), values);
+    }
+}
@@ -0,0 +1,54 @@
+package ru.bloof.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Counter values at one moment, for exporting or for computing rates against an earlier snapshot.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public final class MetricsSnapshot {
+    private final long nanoTime;
+    private final Map<String, Long> counters;
+
+    MetricsSnapshot(long nanoTime, Map<String, Long> counters) {
+        this.nanoTime = nanoTime;
+        this.counters = Collections.unmodifiableMap(counters);
+    }
+
+    /**
+     * {@link System#nanoTime()} when the snapshot was taken.
+     */
+    public long getNanoTime() {
+        return nanoTime;
+    }
+
+    /**
+     * Counter values sorted by name.
+     */
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    /**
+     * Value of the counter, 0 for a counter nobody has used yet.
+     */
+    public long get(String name) {
+        Long value = counters.get(name);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * Growth of the counter per second between the earlier snapshot and this one.
+     */
+    public double rate(String name, MetricsSnapshot earlier) {
+        long nanos = nanoTime - earlier.nanoTime;
+        return nanos == 0 ? 0 : (get(name) - earlier.get(name)) * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return counters.toString();
+    }
+}
@@ -0,0 +1,41 @@
+package ru.bloof.nist;
+
+import org.apache.commons.math3.special.Gamma;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Streaming approximate entropy test comparing the frequencies of overlapping patterns of m and m + 1 bits.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class ApproximateEntropyAccumulator extends PatternAccumulator {
+    private final int m;
+
+    public ApproximateEntropyAccumulator(int m) {
+        super(m + 1);
+        this.m = m;
+    }
+
+    @Override
+    protected TestResult result(long bits) {
+        if (bits <= m) {
+            return new TestResult(NistTest.APPROXIMATE_ENTROPY, bits, Double.NaN);
+        }
+        long[] counts = counts();
+        double apEn = phi(shorten(counts), bits) - phi(counts, bits);
+        double chi_sq = 2 * bits * (FastMath.log(2) - apEn);
+        double p = Gamma.regularizedGammaQ(Math.pow(2, m - 1), chi_sq / 2);
+        return new TestResult(NistTest.APPROXIMATE_ENTROPY, bits, chi_sq, p);
+    }
+
+    private static double phi(long[] counts, long bits) {
+        double sum = 0;
+        for (long count : counts) {
+            if (count > 0) {
+                double pi = (double) count / bits;
+                sum += pi * FastMath.log(pi);
+            }
+        }
+        return sum;
+    }
+}
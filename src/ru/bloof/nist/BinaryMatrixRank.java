@@ -0,0 +1,69 @@
+package ru.bloof.nist;
+
+/**
+ * Rank over GF(2) of binary matrices with up to 64 columns, every row kept as a bit mask and eliminated
+ * with XOR. The row buffer is reused from one matrix to the next, so an instance is not thread-safe.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public final class BinaryMatrixRank {
+    private final int rows, columns;
+    private final long[] matrix;
+
+    public BinaryMatrixRank(int rows, int columns) {
+        if (rows < 1 || columns < 1 || columns > 64) {
+            throw new IllegalArgumentException("Matrix must be at least 1x1 with at most 64 columns");
+        }
+        this.rows = rows;
+        this.columns = columns;
+        matrix = new long[rows];
+    }
+
+    /**
+     * Rank of the matrix filled row by row from bits [from, from + rows * columns) of the sequence.
+     */
+    public int rank(BitSequence sequence, long from) {
+        for (int i = 0; i < rows; i++) {
+            matrix[i] = sequence.getBits(from + (long) i * columns, columns);
+        }
+        return rank();
+    }
+
+    /**
+     * Rank of the matrix with the given rows, bit j of a row being its column j. The array is not modified.
+     */
+    public int rank(long[] rowMasks) {
+        if (rowMasks.length != rows) {
+            throw new IllegalArgumentException("Expected " + rows + " rows, got " + rowMasks.length);
+        }
+        long mask = columns == 64 ? -1L : (1L << columns) - 1;
+        for (int i = 0; i < rows; i++) {
+            matrix[i] = rowMasks[i] & mask;
+        }
+        return rank();
+    }
+
+    private int rank() {
+        int rank = 0;
+        for (int column = 0; column < columns && rank < rows; column++) {
+            long bit = 1L << column;
+            int pivot = rank;
+            while (pivot < rows && (matrix[pivot] & bit) == 0) {
+                pivot++;
+            }
+            if (pivot == rows) {
+                continue;
+            }
+            long row = matrix[pivot];
+            matrix[pivot] = matrix[rank];
+            matrix[rank] = row;
+            for (int i = rank + 1; i < rows; i++) {
+                if ((matrix[i] & bit) != 0) {
+                    matrix[i] ^= row;
+                }
+            }
+            rank++;
+        }
+        return rank;
+    }
+}
@@ -0,0 +1,58 @@
+package ru.bloof.nist;
+
+import org.apache.commons.math3.special.Gamma;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Streaming binary matrix rank test on 32x32 matrices. Rows are assembled across word boundaries and a
+ * matrix is ranked as soon as its last row is complete, bits of an incomplete last matrix are discarded.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class BinaryMatrixRankAccumulator extends BitAccumulator {
+    private static final int M = 32, Q = 32;
+    private static final double[] PI = {0.2888, 0.5776, 0.1336};
+    private final BinaryMatrixRank rank = new BinaryMatrixRank(M, Q);
+    private final long[] rows = new long[M];
+    private int rowCount, rowFill;
+    private long row;
+    private long matricesCount, F_M, F_M1;
+
+    @Override
+    protected void update(long word, int count) {
+        for (int offset = 0; offset < count; ) {
+            int take = Math.min(Q - rowFill, count - offset);
+            row |= bits(word, offset, take) << rowFill;
+            rowFill += take;
+            offset += take;
+            if (rowFill == Q) {
+                rows[rowCount++] = row;
+                row = 0;
+                rowFill = 0;
+                if (rowCount == M) {
+                    addMatrix(rank.rank(rows));
+                    rowCount = 0;
+                }
+            }
+        }
+    }
+
+    private void addMatrix(int r) {
+        matricesCount++;
+        if (r == M) {
+            F_M++;
+        } else if (r == M - 1) {
+            F_M1++;
+        }
+    }
+
+    @Override
+    protected TestResult result(long bits) {
+        double chi_sq = 0;
+        chi_sq += FastMath.pow(F_M - PI[0] * matricesCount, 2) / (PI[0] * matricesCount);
+        chi_sq += FastMath.pow(F_M1 - PI[1] * matricesCount, 2) / (PI[1] * matricesCount);
+        chi_sq += FastMath.pow(matricesCount - F_M - F_M1 - PI[2] * matricesCount, 2) / (PI[2] * matricesCount);
+        double p = Gamma.regularizedGammaQ(1, chi_sq / 2);
+        return new TestResult(NistTest.BINARY_MATRIX_RANK, bits, chi_sq, p > TestResult.SIGNIFICANCE, p);
+    }
+}
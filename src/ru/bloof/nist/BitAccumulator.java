@@ -0,0 +1,106 @@
+package ru.bloof.nist;
+
+import ru.bloof.metrics.Counter;
+import ru.bloof.metrics.Events;
+import ru.bloof.metrics.Metrics;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Statistical test fed with a bit stream chunk by chunk, so the sequence never has to be held in memory.
+ * Bytes are read in the same order as {@link BitSequence#of(byte[])}: bit i is bit {@code i % 8} of byte
+ * {@code i / 8}. Chunks may have any length, subclasses always see whole 64-bit words except for the
+ * last one. An accumulator is used once and is not thread-safe.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public abstract class BitAccumulator {
+    private static final Counter TESTS = Metrics.counter("nist.tests");
+    private long pending;
+    private int pendingBytes;
+    private long bits;
+    private boolean finished;
+    private boolean started;
+    private long startNanos;
+
+    /**
+     * Consumes the remaining bytes of the chunk.
+     */
+    public final void update(ByteBuffer chunk) {
+        if (finished) {
+            throw new IllegalStateException("Test is already finished");
+        }
+        if (!started) {
+            started = true;
+            startNanos = System.nanoTime();
+        }
+        ByteBuffer in = chunk.slice().order(ByteOrder.LITTLE_ENDIAN);
+        chunk.position(chunk.limit());
+        while (pendingBytes != 0 && in.hasRemaining()) {
+            appendByte(in.get());
+        }
+        while (in.remaining() >= 8) {
+            bits += 64;
+            update(in.getLong(), 64);
+        }
+        while (in.hasRemaining()) {
+            appendByte(in.get());
+        }
+    }
+
+    public final void update(byte[] bytes) {
+        update(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Number of bits consumed so far.
+     */
+    public final long getBits() {
+        return bits + 8 * pendingBytes;
+    }
+
+    public final TestResult finish() {
+        if (finished) {
+            throw new IllegalStateException("Test is already finished");
+        }
+        finished = true;
+        if (pendingBytes != 0) {
+            bits += 8 * pendingBytes;
+            update(pending, 8 * pendingBytes);
+        }
+        TestResult result = result(bits);
+        TESTS.increment();
+        if (result.isApplicable()) {
+            Events.testFinished(result.getName(), bits, result.getPValue(), result.isPassed(),
+                    started ? startNanos : System.nanoTime());
+        }
+        return result;
+    }
+
+    private void appendByte(byte b) {
+        pending |= (b & 0xFFL) << (8 * pendingBytes);
+        if (++pendingBytes == 8) {
+            bits += 64;
+            update(pending, 64);
+            pending = 0;
+            pendingBytes = 0;
+        }
+    }
+
+    /**
+     * Next {@code count} bits of the stream as the lowest bits of {@code word}, the higher ones are zero.
+     * {@code count} is 64 for all calls but the last.
+     */
+    protected abstract void update(long word, int count);
+
+    protected abstract TestResult result(long bits);
+
+    /**
+     * Bits [from, from + count) of the word as a number, {@code count} at most 64.
+     */
+    static long bits(long word, int from, int count) {
+        long x = word >>> from;
+        return count == 64 ? x : x & ((1L << count) - 1);
+    }
+}
@@ -0,0 +1,137 @@
+package ru.bloof.nist;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Bit sequence packed into little-endian 64-bit words: bit i is bit {@code i % 64} of word {@code i / 64},
+ * which for a byte array is bit {@code i % 8} of byte {@code i / 8}, the order the tests read bytes in.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public final class BitSequence {
+    private final long[] words;
+    private final long length;
+
+    public BitSequence(long[] words, long length) {
+        if (length < 0 || length > 64L * words.length) {
+            throw new IllegalArgumentException("Length " + length + " does not fit into " + words.length + " words");
+        }
+        this.words = words;
+        this.length = length;
+    }
+
+    public static BitSequence of(byte[] bytes) {
+        long[] words = new long[(bytes.length + 7) / 8];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(words, 0, bytes.length / 8);
+        for (int i = bytes.length / 8 * 8; i < bytes.length; i++) {
+            words[i / 8] |= (bytes[i] & 0xFFL) << (8 * (i % 8));
+        }
+        return new BitSequence(words, 8L * bytes.length);
+    }
+
+    public long length() {
+        return length;
+    }
+
+    long[] words() {
+        return words;
+    }
+
+    public boolean get(long i) {
+        return (words[(int) (i >>> 6)] >>> i & 1) != 0;
+    }
+
+    /**
+     * Bits [from, from + count) as a number, bit {@code from} being the lowest, {@code count} at most 64.
+     */
+    public long getBits(long from, int count) {
+        int w = (int) (from >>> 6), offset = (int) (from & 63);
+        long x = words[w] >>> offset;
+        if (offset + count > 64) {
+            x |= words[w + 1] << (64 - offset);
+        }
+        return count == 64 ? x : x & ((1L << count) - 1);
+    }
+
+    /**
+     * Number of ones among bits [from, to).
+     */
+    public long countOnes(long from, long to) {
+        return count(from, to, false);
+    }
+
+    /**
+     * Number of i in [from, to - 1) with bit i different from bit i + 1.
+     */
+    public long countTransitions(long from, long to) {
+        return count(from, to - 1, true);
+    }
+
+    private long count(long from, long to, boolean transitions) {
+        if (from >= to) {
+            return 0;
+        }
+        int first = (int) (from >>> 6), last = (int) ((to - 1) >>> 6);
+        long firstMask = -1L << from, lastMask = -1L >>> (63 - ((to - 1) & 63));
+        if (first == last) {
+            return Long.bitCount(word(first, transitions) & firstMask & lastMask);
+        }
+        long count = Long.bitCount(word(first, transitions) & firstMask);
+        for (int w = first + 1; w < last; w++) {
+            count += Long.bitCount(word(w, transitions));
+        }
+        return count + Long.bitCount(word(last, transitions) & lastMask);
+    }
+
+    /**
+     * Word w, or for transitions the word whose bit k tells whether bits k and k + 1 of word w differ.
+     */
+    private long word(int w, boolean transitions) {
+        long x = words[w];
+        if (!transitions) {
+            return x;
+        }
+        long next = w + 1 < words.length ? words[w + 1] : 0;
+        return x ^ (x >>> 1 | next << 63);
+    }
+
+    /**
+     * Length of the longest run of ones among bits [from, to).
+     */
+    public int longestRun(long from, long to) {
+        int best = 0, run = 0;
+        for (long pos = from; pos < to; ) {
+            int offset = (int) (pos & 63);
+            int n = (int) Math.min(64 - offset, to - pos);
+            long x = words[(int) (pos >>> 6)] >>> offset;
+            if (n < 64) {
+                x &= (1L << n) - 1;
+            }
+            // bits beyond n are zero, so ~x always has a zero at or below n
+            int head = Long.numberOfTrailingZeros(~x);
+            if (head == n) {
+                run += n;
+            } else {
+                best = Math.max(best, run + head);
+                run = 0;
+                int p = head;
+                x >>>= head;
+                while (x != 0) {
+                    int zeros = Long.numberOfTrailingZeros(x);
+                    x >>>= zeros;
+                    int ones = Long.numberOfTrailingZeros(~x);
+                    p += zeros + ones;
+                    if (p == n) {
+                        run = ones;
+                        break;
+                    }
+                    best = Math.max(best, ones);
+                    x >>>= ones;
+                }
+            }
+            pos += n;
+        }
+        return Math.max(best, run);
+    }
+}
@@ -0,0 +1,47 @@
+package ru.bloof.nist;
+
+import org.apache.commons.math3.special.Gamma;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Streaming frequency test within blocks, an incomplete last block is discarded.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class BlockFrequencyAccumulator extends BitAccumulator {
+    private final int bitsInBlock;
+    private long blocksCount;
+    private int blockFill;
+    private long blockOnes;
+    private double chi_sq;
+
+    public BlockFrequencyAccumulator(int bitsInBlock) {
+        if (bitsInBlock < 1) {
+            throw new IllegalArgumentException("Block must have at least one bit: " + bitsInBlock);
+        }
+        this.bitsInBlock = bitsInBlock;
+    }
+
+    @Override
+    protected void update(long word, int count) {
+        for (int offset = 0; offset < count; ) {
+            int take = Math.min(bitsInBlock - blockFill, count - offset);
+            blockOnes += Long.bitCount(bits(word, offset, take));
+            blockFill += take;
+            offset += take;
+            if (blockFill == bitsInBlock) {
+                chi_sq += FastMath.pow(1. * blockOnes / bitsInBlock - 0.5, 2);
+                blocksCount++;
+                blockFill = 0;
+                blockOnes = 0;
+            }
+        }
+    }
+
+    @Override
+    protected TestResult result(long bits) {
+        double statistic = chi_sq * 4 * bitsInBlock;
+        double p = Gamma.regularizedGammaQ(blocksCount / 2., statistic / 2);
+        return new TestResult(NistTest.BLOCK_FREQUENCY, bits, statistic, p > TestResult.SIGNIFICANCE, p);
+    }
+}
@@ -0,0 +1,69 @@
+package ru.bloof.nist;
+
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Streaming cumulative sums test, forward and backward p-values. Both excursions follow from the extremes
+ * of the partial sums of the +-1 walk and its final value, which are tracked a byte at a time through tables
+ * of the sum of each byte and its lowest and highest prefix sums.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class CumulativeSumsAccumulator extends BitAccumulator {
+    private static final int[] SUM = new int[256], MIN = new int[256], MAX = new int[256];
+    private static final NormalDistribution NORMAL = new NormalDistribution();
+    private long sum, min, max;
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            int s = 0, lo = 0, hi = 0;
+            for (int k = 0; k < 8; k++) {
+                s += (b >>> k & 1) == 0 ? -1 : 1;
+                lo = Math.min(lo, s);
+                hi = Math.max(hi, s);
+            }
+            SUM[b] = s;
+            MIN[b] = lo;
+            MAX[b] = hi;
+        }
+    }
+
+    @Override
+    protected void update(long word, int count) {
+        // count is a multiple of 8, the stream is fed in bytes
+        for (int k = 0; k < count; k += 8) {
+            int b = (int) (word >>> k) & 0xFF;
+            min = Math.min(min, sum + MIN[b]);
+            max = Math.max(max, sum + MAX[b]);
+            sum += SUM[b];
+        }
+    }
+
+    @Override
+    protected TestResult result(long bits) {
+        if (bits == 0) {
+            return new TestResult(NistTest.CUMULATIVE_SUMS, bits, Double.NaN);
+        }
+        long forward = Math.max(max, -min);
+        // partial sums of the reversed sequence are sum - S_k for k < n
+        long backward = Math.max(sum - min, max - sum);
+        return new TestResult(NistTest.CUMULATIVE_SUMS, bits, Math.max(forward, backward),
+                pValue(bits, forward), pValue(bits, backward));
+    }
+
+    private static double pValue(long n, long z) {
+        double sqrtN = FastMath.sqrt(n);
+        double sum1 = 0;
+        for (long k = (-n / z + 1) / 4; k <= (n / z - 1) / 4; k++) {
+            sum1 += NORMAL.cumulativeProbability((4 * k + 1) * z / sqrtN)
+                    - NORMAL.cumulativeProbability((4 * k - 1) * z / sqrtN);
+        }
+        double sum2 = 0;
+        for (long k = (-n / z - 3) / 4; k <= (n / z - 1) / 4; k++) {
+            sum2 += NORMAL.cumulativeProbability((4 * k + 3) * z / sqrtN)
+                    - NORMAL.cumulativeProbability((4 * k + 1) * z / sqrtN);
+        }
+        return 1 - sum1 + sum2;
+    }
+}
@@ -0,0 +1,25 @@
+package ru.bloof.nist;
+
+import org.apache.commons.math3.special.Erf;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Streaming frequency (monobit) test.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class FrequencyAccumulator extends BitAccumulator {
+    private long ones;
+
+    @Override
+    protected void update(long word, int count) {
+        ones += Long.bitCount(word);
+    }
+
+    @Override
+    protected TestResult result(long bits) {
+        long sum = 2 * ones - bits;
+        double p = Erf.erfc(FastMath.abs(sum) / FastMath.sqrt(bits * 2));
+        return new TestResult(NistTest.FREQUENCY, bits, sum, p > TestResult.SIGNIFICANCE, p);
+    }
+}
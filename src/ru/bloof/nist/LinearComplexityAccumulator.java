@@ -0,0 +1,140 @@
+package ru.bloof.nist;
+
+import org.apache.commons.math3.special.Gamma;
+import org.apache.commons.math3.util.FastMath;
+
+import java.util.Arrays;
+
+/**
+ * Streaming linear complexity test on M-bit blocks, an incomplete last block is discarded.
+ * <p>
+ * Berlekamp-Massey runs on bit-packed polynomials. The block is kept reversed, so the discrepancy
+ * sum over c_i * s_(N - i) is the parity of the AND of the connection polynomial with a shifted window of
+ * the reversed block, 64 terms per instruction, and the polynomial update is a shifted XOR.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class LinearComplexityAccumulator extends BitAccumulator {
+    private static final double[] PI = {0.010417, 0.03125, 0.125, 0.5, 0.25, 0.0625, 0.020833};
+    private final int bitsInBlock;
+    private final int words;
+    private final long[] reversed;
+    private final long[] c, b, t;
+    private final double mean;
+    private final long[] v = new long[PI.length];
+    private int blockFill;
+
+    public LinearComplexityAccumulator(int bitsInBlock) {
+        if (bitsInBlock < 2) {
+            throw new IllegalArgumentException("Block must have at least 2 bits: " + bitsInBlock);
+        }
+        this.bitsInBlock = bitsInBlock;
+        words = (bitsInBlock >>> 6) + 1;
+        reversed = new long[words];
+        c = new long[words];
+        b = new long[words];
+        t = new long[words];
+        double sign = bitsInBlock % 2 == 0 ? 1 : -1;
+        mean = bitsInBlock / 2. + (9 - sign) / 36 - (bitsInBlock / 3. + 2. / 9) / FastMath.pow(2, bitsInBlock);
+    }
+
+    @Override
+    protected void update(long word, int count) {
+        for (int k = 0; k < count; k++) {
+            // bit j of the block goes to position M - 1 - j of the reversed one
+            int position = bitsInBlock - 1 - blockFill;
+            reversed[position >>> 6] |= (word >>> k & 1) << position;
+            if (++blockFill == bitsInBlock) {
+                addBlock(linearComplexity());
+                Arrays.fill(reversed, 0);
+                blockFill = 0;
+            }
+        }
+    }
+
+    /**
+     * Length of the shortest LFSR generating the current block.
+     */
+    int linearComplexity() {
+        Arrays.fill(c, 0);
+        Arrays.fill(b, 0);
+        c[0] = b[0] = 1;
+        int L = 0, m = -1;
+        for (int N = 0; N < bitsInBlock; N++) {
+            // s_(N - i) is bit M - 1 - N + i of the reversed block
+            int shift = bitsInBlock - 1 - N;
+            long d = 0;
+            for (int w = 0; w <= N >>> 6; w++) {
+                d ^= c[w] & window(shift + (w << 6));
+            }
+            if (Long.bitCount(d) % 2 == 0) {
+                continue;
+            }
+            System.arraycopy(c, 0, t, 0, words);
+            xorShifted(c, b, N - m);
+            if (L <= N / 2) {
+                L = N + 1 - L;
+                m = N;
+                System.arraycopy(t, 0, b, 0, words);
+            }
+        }
+        return L;
+    }
+
+    /**
+     * 64 bits of the reversed block starting at {@code from}, zeros past its end.
+     */
+    private long window(int from) {
+        int w = from >>> 6, offset = from & 63;
+        long x = w < words ? reversed[w] >>> offset : 0;
+        if (offset != 0 && w + 1 < words) {
+            x |= reversed[w + 1] << (64 - offset);
+        }
+        return x;
+    }
+
+    /**
+     * target ^= source * x^shift, bits past the array are dropped.
+     */
+    private void xorShifted(long[] target, long[] source, int shift) {
+        int wordShift = shift >>> 6, bitShift = shift & 63;
+        for (int w = words - 1; w >= wordShift; w--) {
+            long x = source[w - wordShift] << bitShift;
+            if (bitShift != 0 && w - wordShift > 0) {
+                x |= source[w - wordShift - 1] >>> (64 - bitShift);
+            }
+            target[w] ^= x;
+        }
+    }
+
+    private void addBlock(int L) {
+        double sign = bitsInBlock % 2 == 0 ? 1 : -1;
+        double T = sign * (L - mean) + 2. / 9;
+        int index;
+        if (T <= -2.5) {
+            index = 0;
+        } else if (T > 2.5) {
+            index = 6;
+        } else {
+            index = (int) FastMath.ceil(T + 2.5);
+        }
+        v[index]++;
+    }
+
+    @Override
+    protected TestResult result(long bits) {
+        long blocksCount = 0;
+        for (long count : v) {
+            blocksCount += count;
+        }
+        if (blocksCount == 0) {
+            return new TestResult(NistTest.LINEAR_COMPLEXITY, bits, Double.NaN);
+        }
+        double chi_sq = 0;
+        for (int i = 0; i < PI.length; i++) {
+            chi_sq += FastMath.pow(v[i] - blocksCount * PI[i], 2) / (blocksCount * PI[i]);
+        }
+        double p = Gamma.regularizedGammaQ((PI.length - 1) / 2., chi_sq / 2);
+        return new TestResult(NistTest.LINEAR_COMPLEXITY, bits, chi_sq, p);
+    }
+}
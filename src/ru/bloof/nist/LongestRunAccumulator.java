@@ -0,0 +1,75 @@
+package ru.bloof.nist;
+
+import org.apache.commons.math3.special.Gamma;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Streaming test for the longest run of ones in 128-bit blocks. A run is carried over word boundaries
+ * within a block, an incomplete last block is counted like the others.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class LongestRunAccumulator extends BitAccumulator {
+    private static final int BITS_IN_BLOCK = 128;
+    private static final double[] PI = {0.1174, 0.2430, 0.2493, 0.1752, 0.1027, 0.1124};
+    private final long[] v = new long[PI.length];
+    private int blockFill;
+    private int run, best;
+
+    @Override
+    protected void update(long word, int count) {
+        for (int offset = 0; offset < count; ) {
+            int take = Math.min(BITS_IN_BLOCK - blockFill, count - offset);
+            add(bits(word, offset, take), take);
+            blockFill += take;
+            offset += take;
+            if (blockFill == BITS_IN_BLOCK) {
+                endBlock();
+            }
+        }
+    }
+
+    private void add(long x, int n) {
+        int head = Long.numberOfTrailingZeros(~x);
+        if (head >= n) {
+            run += n;
+            return;
+        }
+        best = Math.max(best, Math.max(run + head, longestRun(x)));
+        // ones at the top of the n bits continue into the next part
+        run = Long.numberOfLeadingZeros(~(x << (64 - n)));
+    }
+
+    private static int longestRun(long x) {
+        int length = 0;
+        while (x != 0) {
+            x &= x >>> 1;
+            length++;
+        }
+        return length;
+    }
+
+    private void endBlock() {
+        int aMaxRun = Math.max(best, run);
+        v[Math.min(Math.max(aMaxRun - 4, 0), PI.length - 1)]++;
+        blockFill = 0;
+        run = best = 0;
+    }
+
+    @Override
+    protected TestResult result(long bits) {
+        if (blockFill != 0) {
+            endBlock();
+        }
+        long blocksCount = 0;
+        for (long count : v) {
+            blocksCount += count;
+        }
+        double chi_sq = 0;
+        for (int i = 0; i < PI.length; i++) {
+            chi_sq += FastMath.pow(v[i] - blocksCount * PI[i], 2) / (blocksCount * PI[i]);
+        }
+        double p = Gamma.regularizedGammaQ((PI.length - 1) / 2., chi_sq / 2);
+        return new TestResult(NistTest.LONGEST_RUN, bits, chi_sq, p > TestResult.SIGNIFICANCE, p);
+    }
+}
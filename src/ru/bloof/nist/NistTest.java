@@ -0,0 +1,34 @@
+package ru.bloof.nist;
+
+/**
+ * Tests of the NIST SP 800-22 suite.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public enum NistTest {
+    FREQUENCY("Frequency test"),
+    BLOCK_FREQUENCY("Frequency block test"),
+    RUNS("Runs test"),
+    LONGEST_RUN("OnesLongestRun test"),
+    BINARY_MATRIX_RANK("BinaryMatrixRank test"),
+    SPECTRAL("Spectral test"),
+    NON_OVERLAPPING_TEMPLATE("Non-overlapping template test"),
+    OVERLAPPING_TEMPLATE("Overlapping template test"),
+    UNIVERSAL("Universal test"),
+    LINEAR_COMPLEXITY("Linear complexity test"),
+    SERIAL("Serial test"),
+    APPROXIMATE_ENTROPY("Approximate entropy test"),
+    CUMULATIVE_SUMS("Cumulative sums test"),
+    RANDOM_EXCURSIONS("Random excursions test"),
+    RANDOM_EXCURSIONS_VARIANT("Random excursions variant test");
+
+    private final String name;
+
+    NistTest(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -7,8 +7,12 @@ import org.apache.commons.math3.util.FastMath;
 import ru.bloof.prng.BBSRandom;
 import ru.bloof.prng.DeviceRandom;
 
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.Random;
+import java.util.stream.LongStream;
 
 /**
  * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
@@ -16,51 +20,45 @@ import java.util.Random;
 public class NistTests {
     public static final int BITS_FOR_TEST = 6272;
     public static final int BITS_FOR_MATRIX_TEST = 38912;
+    // 38912 matrices 32x32, as recommended for the rank test
+    public static final int BITS_FOR_MATRIX_SAMPLE = BITS_FOR_MATRIX_TEST * 32 * 32;
     public static final int BITS_IN_BYTE = 8;
 
-    public static void main(String[] args) {
-        Random rnd = createBBSRandom();
-        byte[] data = new byte[BITS_FOR_TEST / BITS_IN_BYTE];
-        rnd.nextBytes(data);
-        try (PrintWriter pw = new PrintWriter(System.out)) {
-            frequencyTest(data, pw);
-            frequencyBlockTest(data, 32, pw);
-            runsTest(data, pw);
-            onesLongestRun(data, pw);
-
-            data = new byte[BITS_FOR_MATRIX_TEST / BITS_IN_BYTE];
-            rnd.nextBytes(data);
-            binaryMatrixRankTest(data, pw);
-        }
+    /**
+     * Runs the streaming tests over the file given as the argument or over generated bits.
+     */
+    public static void main(String[] args) throws IOException {
+        List<BitAccumulator> tests = StreamingSuite.defaultTests();
+        StreamingSuite suite = new StreamingSuite();
+        List<TestResult> results = args.length > 0
+                ? suite.run(tests, Paths.get(args[0]))
+                : suite.run(tests, createBBSRandom(), BITS_FOR_MATRIX_SAMPLE / BITS_IN_BYTE);
+        results.forEach(System.out::println);
     }
 
     public static void frequencyTest(byte[] bytes, PrintWriter out) {
+        frequencyTest(BitSequence.of(bytes), out);
+    }
+
+    public static void frequencyTest(BitSequence sequence, PrintWriter out) {
         out.println("Frequency test:");
-        int sum = 0;
-        for (byte b : bytes) {
-            for (int j = 0; j < 8; j++) {
-                sum += testBit(b, j) ? 1 : -1;
-            }
-        }
+        long sum = 2 * sequence.countOnes(0, sequence.length()) - sequence.length();
         out.println("Sum: " + sum);
-        double p = Erf.erfc(FastMath.abs(sum) / FastMath.sqrt(bytes.length * BITS_IN_BYTE * 2));
+        double p = Erf.erfc(FastMath.abs(sum) / FastMath.sqrt(sequence.length() * 2));
         out.println("p-value: " + p);
         out.println(p > 0.01 ? "Frequency test passed" : "Frequency test failed");
         out.println("-------------------");
     }
 
     public static void runsTest(byte[] bytes, PrintWriter out) {
+        runsTest(BitSequence.of(bytes), out);
+    }
+
+    public static void runsTest(BitSequence sequence, PrintWriter out) {
         out.println("Runs test: ");
-        int ones = 0;
-        for (byte b : bytes) {
-            for (int j = 0; j < BITS_IN_BYTE; j++) {
-                if (testBit(b, j)) {
-                    ones++;
-                }
-            }
-        }
+        long ones = sequence.countOnes(0, sequence.length());
         out.println("Total ones: " + ones);
-        int bits = bytes.length * BITS_IN_BYTE;
+        long bits = sequence.length();
         double pi = 1. * ones / bits;
         out.println("Pi: " + pi);
         out.println("Testing pi - 1/2 < 2/sqrt(n): " + (pi - 0.5) + " and " + 2 / FastMath.sqrt(bits));
@@ -68,18 +66,7 @@ public class NistTests {
             out.println("Runs test failed");
             return;
         }
-        int sign = -1, v_n = 1;
-        for (int i = 0; i < bytes.length; i++) {
-            for (int j = 0; j < BITS_IN_BYTE; j++) {
-                int curSign = testBit(bytes[i], j) ? 1 : -1;
-                if (curSign != sign) {
-                    if (!(i == 0 && j == 0)) {
-                        v_n++;
-                    }
-                }
-                sign = curSign;
-            }
-        }
+        long v_n = 1 + sequence.countTransitions(0, bits);
         out.println("Sign changes: " + v_n);
         double p = Erf.erfc(FastMath.abs(v_n - 2 * bits * pi * (1 - pi)) / (2 * FastMath.sqrt(2 * bits) * pi * (1 - pi)));
         out.println("p-value: " + p);
@@ -89,36 +76,25 @@ public class NistTests {
 
     // В блоке 128 бит.
     public static void onesLongestRun(byte[] bytes, PrintWriter out) {
+        onesLongestRun(BitSequence.of(bytes), out);
+    }
+
+    public static void onesLongestRun(BitSequence sequence, PrintWriter out) {
         out.println("Ones Longest Run Test: ");
         int bitsInBlock = 128;
-        int bits = bytes.length * BITS_IN_BYTE;
-        int blocksCount = bits / bitsInBlock;
+        long bits = sequence.length();
+        long blocksCount = bits / bitsInBlock;
         if (bits % bitsInBlock != 0) {
             blocksCount++;
         }
         out.println("Bits in block " + bitsInBlock + ", blocks count " + blocksCount);
-        int[] maxRun = new int[blocksCount];
-        int block = -1, run = 0;
-        for (int i = 0; i < bits; i++) {
-            int blockNumber = i / bitsInBlock;
-            if (blockNumber != block) {
-                run = 0;
-            }
-            block = blockNumber;
-            if (testBit(bytes, i)) {
-                run++;
-            } else {
-                run = 0;
-            }
-            if (maxRun[blockNumber] < run) {
-                maxRun[blockNumber] = run;
-            }
-        }
 
         int k = 5;
         double chi_sq = 0;
         int[] v = new int[k + 1];
-        for (int aMaxRun : maxRun) {
+        for (long block = 0; block < blocksCount; block++) {
+            long from = block * bitsInBlock;
+            int aMaxRun = sequence.longestRun(from, Math.min(from + bitsInBlock, bits));
             int index;
             switch (aMaxRun) {
                 case 0:
@@ -164,28 +140,31 @@ public class NistTests {
 
     // M = Q = 32
     public static void binaryMatrixRankTest(byte[] bytes, PrintWriter out) {
+        binaryMatrixRankTest(BitSequence.of(bytes), out);
+    }
+
+    public static void binaryMatrixRankTest(BitSequence sequence, PrintWriter out) {
         out.println("Binary Matrix Rank Test");
         int M, Q = M = 32;
         int matrixSize = M * Q;
-        int bits = bytes.length * BITS_IN_BYTE;
-        int matricesCount = bits / matrixSize;
+        long bits = sequence.length();
+        long matricesCount = bits / matrixSize;
         out.println("M=Q=32, matrices count " + matricesCount);
-        int F_M = 0, F_M1 = 0;
-        for (int i = 0; i < matricesCount; i++) {
-            int[][] data = new int[M][Q];
-            for (int j = 0; j < M; j++) {
-                for (int k = 0; k < Q; k++) {
-                    int bit = i * matrixSize + j * Q + k;
-                    data[j][k] = testBit(bytes, bit) ? 1 : 0;
-                }
-            }
-            int rank = computeRank(data);
-            if (rank == M) {
-                F_M++;
-            } else if (rank == M - 1) {
-                F_M1++;
-            }
-        }
+        ThreadLocal<BinaryMatrixRank> ranks = ThreadLocal.withInitial(() -> new BinaryMatrixRank(M, Q));
+        long[] counts = LongStream.range(0, matricesCount)
+                .parallel()
+                .mapToInt(i -> ranks.get().rank(sequence, i * matrixSize))
+                .collect(() -> new long[2], (c, rank) -> {
+                    if (rank == M) {
+                        c[0]++;
+                    } else if (rank == M - 1) {
+                        c[1]++;
+                    }
+                }, (c1, c2) -> {
+                    c1[0] += c2[0];
+                    c1[1] += c2[1];
+                });
+        long F_M = counts[0], F_M1 = counts[1];
         out.println("F_M: " + F_M + ", F_M-1: " + F_M1 + ", N-F_M-F_M-1: " + (matricesCount - F_M - F_M1));
 
         double[] pi = new double[]{0.2888, 0.5776, 0.1336};
@@ -200,94 +179,6 @@ public class NistTests {
         out.println("-------------------");
     }
 
-    /**
-     * Считает ранг квадратной двоичной матрицы.
-     */
-    private static int computeRank(int[][] data) {
-        int M = data.length;
-        for (int i = 0; i < M - 1; i++) {
-            if (data[i][i] == 1) {
-                rowOperations(true, i, M, data);
-            } else if (findUnitAndSwap(false, i, M, data)) {
-                rowOperations(false, i, M, data);
-            }
-        }
-        for (int i = M - 1; i > 0; i--) {
-            if (data[i][i] == 1) {
-                rowOperations(false, i, M, data);
-            } else if (findUnitAndSwap(false, i, M, data)) {
-                rowOperations(false, i, M, data);
-            }
-        }
-        return rank(M, data);
-    }
-
-    private static int rank(int q, int[][] data) {
-        int rank = q;
-        for (int i = 0; i < q; i++) {
-            boolean allZeroes = true;
-            for (int j = 0; j < q; j++) {
-                if (data[i][j] == 1) {
-                    allZeroes = false;
-                    break;
-                }
-            }
-            if (allZeroes) {
-                rank--;
-            }
-        }
-        return rank;
-    }
-
-    private static boolean findUnitAndSwap(boolean forward, int i, int m, int[][] data) {
-        if (forward) {
-            int index = i + 1;
-            while (index < m && data[index][i] == 0) {
-                index++;
-            }
-            if (index < m) {
-                swapRows(i, index, data);
-                return true;
-            }
-        } else {
-            int index = i - 1;
-            while (index >= 0 && data[index][i] == 0) {
-                index--;
-            }
-            if (index >= 0) {
-                swapRows(i, index, data);
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private static void swapRows(int a, int b, int[][] data) {
-        int[] value = data[a];
-        data[a] = data[b];
-        data[b] = value;
-    }
-
-    private static void rowOperations(boolean forward, int i, int m, int[][] data) {
-        if (forward) {
-            for (int j = i + 1; j < m; j++) {
-                if (data[j][i] == 1) {
-                    for (int k = i; k < m; k++) {
-                        data[j][k] = (data[j][k] + data[i][k]) % 2;
-                    }
-                }
-            }
-        } else {
-            for (int j = i - 1; j >= 0; j--) {
-                if (data[j][i] == 1) {
-                    for (int k = 0; k < m; k++) {
-                        data[j][k] = (data[j][k] + data[i][k]) % 2;
-                    }
-                }
-            }
-        }
-    }
-
     public static boolean testBit(byte[] bytes, int num) {
         int byteNumber = num / BITS_IN_BYTE;
         int bitInByte = num % BITS_IN_BYTE;
@@ -295,23 +186,19 @@ public class NistTests {
     }
 
     public static void frequencyBlockTest(byte[] bytes, int bitsInBlock, PrintWriter out) {
+        frequencyBlockTest(BitSequence.of(bytes), bitsInBlock, out);
+    }
+
+    public static void frequencyBlockTest(BitSequence sequence, int bitsInBlock, PrintWriter out) {
         out.println("Frequency block test: ");
-        int blocksCount = bytes.length * BITS_IN_BYTE / bitsInBlock;
-        int bitsInBlocks = bitsInBlock * blocksCount;
-        int[] ones = new int[blocksCount];
+        long blocksCount = sequence.length() / bitsInBlock;
+        long bitsInBlocks = bitsInBlock * blocksCount;
         out.println("Blocks count: " + blocksCount + ", bits in block: " + bitsInBlock +
-                ", bits discarded: " + (bytes.length * BITS_IN_BYTE - bitsInBlocks));
-        for (int i = 0; i < bitsInBlocks; i++) {
-            int byteNumber = i / BITS_IN_BYTE;
-            int bitInByte = i % BITS_IN_BYTE;
-            int blockNumber = i / bitsInBlock;
-            if (testBit(bytes[byteNumber], bitInByte)) {
-                ones[blockNumber]++;
-            }
-        }
+                ", bits discarded: " + (sequence.length() - bitsInBlocks));
         double chi_sq = 0;
-        for (int i = 0; i < blocksCount; i++) {
-            chi_sq += FastMath.pow(1. * ones[i] / bitsInBlock - 0.5, 2);
+        for (long i = 0; i < blocksCount; i++) {
+            long ones = sequence.countOnes(i * bitsInBlock, (i + 1) * bitsInBlock);
+            chi_sq += FastMath.pow(1. * ones / bitsInBlock - 0.5, 2);
         }
         chi_sq *= 4 * bitsInBlock;
         out.println("\\chi^2: " + chi_sq);
@@ -322,8 +209,7 @@ public class NistTests {
     }
 
     public static boolean testBit(byte value, int bit) {
-        int intValue = value < 0 ? 256 + value : value;
-        return ((intValue >> bit) & 1) == 1;
+        return ((value >> bit) & 1) == 1;
     }
 
     @SuppressWarnings("unused")
@@ -0,0 +1,113 @@
+package ru.bloof.nist;
+
+import org.apache.commons.math3.special.Gamma;
+import org.apache.commons.math3.util.FastMath;
+
+import java.util.Arrays;
+
+/**
+ * Streaming non-overlapping template matching test for all aperiodic templates of the given length, one
+ * p-value per template. The window of the last m bits indexes a table of templates, so every position costs
+ * one lookup however many templates there are. A match makes its template skip the next m - 1 positions.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class NonOverlappingTemplateAccumulator extends BitAccumulator {
+    private final int m;
+    private final int bitsInBlock;
+    private final int[] templates;
+    private final int[] index;
+    private final int[] matches;
+    private final long[] next;
+    private final double[] chi_sq;
+    private final double mean, variance;
+    private int window;
+    private int blockFill;
+    private long blocksCount;
+
+    public NonOverlappingTemplateAccumulator(int m, int bitsInBlock) {
+        if (m < 2 || m > 16 || bitsInBlock < m) {
+            throw new IllegalArgumentException("Template length must be in [2, 16] and fit into a block");
+        }
+        this.m = m;
+        this.bitsInBlock = bitsInBlock;
+        templates = aperiodicTemplates(m);
+        index = new int[1 << m];
+        Arrays.fill(index, -1);
+        for (int i = 0; i < templates.length; i++) {
+            index[templates[i]] = i;
+        }
+        matches = new int[templates.length];
+        next = new long[templates.length];
+        chi_sq = new double[templates.length];
+        mean = (bitsInBlock - m + 1) / FastMath.pow(2, m);
+        variance = bitsInBlock * (1 / FastMath.pow(2, m) - (2 * m - 1) / FastMath.pow(2, 2 * m));
+    }
+
+    /**
+     * Templates of m bits, first bit the highest, that cannot overlap a shifted copy of themselves.
+     */
+    public static int[] aperiodicTemplates(int m) {
+        int[] result = new int[1 << m];
+        int count = 0;
+        for (int t = 0; t < 1 << m; t++) {
+            boolean aperiodic = true;
+            for (int k = 1; k < m && aperiodic; k++) {
+                // the first k bits equal to the last k bits
+                aperiodic = t >>> (m - k) != (t & ((1 << k) - 1));
+            }
+            if (aperiodic) {
+                result[count++] = t;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    public int[] getTemplates() {
+        return templates.clone();
+    }
+
+    @Override
+    protected void update(long word, int count) {
+        int mask = (1 << m) - 1;
+        for (int k = 0; k < count; k++) {
+            window = (window << 1 | (int) (word >>> k & 1)) & mask;
+            int position = ++blockFill - m;
+            if (position >= 0) {
+                int t = index[window];
+                if (t >= 0 && position >= next[t]) {
+                    matches[t]++;
+                    next[t] = position + m;
+                }
+            }
+            if (blockFill == bitsInBlock) {
+                endBlock();
+            }
+        }
+    }
+
+    private void endBlock() {
+        for (int t = 0; t < templates.length; t++) {
+            chi_sq[t] += FastMath.pow(matches[t] - mean, 2) / variance;
+        }
+        Arrays.fill(matches, 0);
+        Arrays.fill(next, 0);
+        window = 0;
+        blockFill = 0;
+        blocksCount++;
+    }
+
+    @Override
+    protected TestResult result(long bits) {
+        if (blocksCount == 0) {
+            return new TestResult(NistTest.NON_OVERLAPPING_TEMPLATE, bits, Double.NaN);
+        }
+        double[] p = new double[templates.length];
+        double max = 0;
+        for (int t = 0; t < templates.length; t++) {
+            p[t] = Gamma.regularizedGammaQ(blocksCount / 2., chi_sq[t] / 2);
+            max = Math.max(max, chi_sq[t]);
+        }
+        return new TestResult(NistTest.NON_OVERLAPPING_TEMPLATE, bits, max, p);
+    }
+}
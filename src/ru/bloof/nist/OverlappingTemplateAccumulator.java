@@ -0,0 +1,54 @@
+package ru.bloof.nist;
+
+import org.apache.commons.math3.special.Gamma;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Streaming overlapping template matching test for the template of 9 ones in 1032-bit blocks,
+ * an incomplete last block is discarded.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class OverlappingTemplateAccumulator extends BitAccumulator {
+    private static final int M = 9;
+    private static final int BITS_IN_BLOCK = 1032;
+    private static final double[] PI = {0.364091, 0.185659, 0.139381, 0.100571, 0.070432, 0.139865};
+    private final long[] v = new long[PI.length];
+    private int run;
+    private int blockFill;
+    private int matches;
+
+    @Override
+    protected void update(long word, int count) {
+        for (int k = 0; k < count; k++) {
+            // a window of m ones ends here exactly when the current run of ones is at least m long
+            run = (word >>> k & 1) == 0 ? 0 : run + 1;
+            if (run >= M) {
+                matches++;
+            }
+            if (++blockFill == BITS_IN_BLOCK) {
+                v[Math.min(matches, PI.length - 1)]++;
+                matches = 0;
+                run = 0;
+                blockFill = 0;
+            }
+        }
+    }
+
+    @Override
+    protected TestResult result(long bits) {
+        long blocksCount = 0;
+        for (long count : v) {
+            blocksCount += count;
+        }
+        if (blocksCount == 0) {
+            return new TestResult(NistTest.OVERLAPPING_TEMPLATE, bits, Double.NaN);
+        }
+        double chi_sq = 0;
+        for (int i = 0; i < PI.length; i++) {
+            chi_sq += FastMath.pow(v[i] - blocksCount * PI[i], 2) / (blocksCount * PI[i]);
+        }
+        double p = Gamma.regularizedGammaQ((PI.length - 1) / 2., chi_sq / 2);
+        return new TestResult(NistTest.OVERLAPPING_TEMPLATE, bits, chi_sq, p);
+    }
+}
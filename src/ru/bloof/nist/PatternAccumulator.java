@@ -0,0 +1,63 @@
+package ru.bloof.nist;
+
+/**
+ * Counts of all overlapping m-bit patterns of the stream extended cyclically by its first m - 1 bits,
+ * the first bit of a pattern being its highest. Counts of shorter patterns are sums of these, since
+ * every shorter pattern of a cyclic sequence is followed by exactly one bit.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+abstract class PatternAccumulator extends BitAccumulator {
+    private final int m;
+    private final long[] counts;
+    private int window;
+    private long seen;
+    private long head;
+
+    PatternAccumulator(int m) {
+        if (m < 1 || m > 24) {
+            throw new IllegalArgumentException("Pattern length must be in [1, 24]: " + m);
+        }
+        this.m = m;
+        counts = new long[1 << m];
+    }
+
+    @Override
+    protected void update(long word, int count) {
+        if (seen < m - 1) {
+            int take = (int) Math.min(m - 1 - seen, count);
+            head |= bits(word, 0, take) << seen;
+        }
+        int mask = (1 << m) - 1;
+        for (int k = 0; k < count; k++) {
+            window = (window << 1 | (int) (word >>> k & 1)) & mask;
+            if (++seen >= m) {
+                counts[window]++;
+            }
+        }
+    }
+
+    /**
+     * Counts of the m-bit patterns, to be called once after the whole stream.
+     */
+    long[] counts() {
+        if (seen >= m) {
+            for (int k = 0; k < m - 1; k++) {
+                window = (window << 1 | (int) (head >>> k & 1)) & ((1 << m) - 1);
+                counts[window]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Counts of the patterns one bit shorter.
+     */
+    static long[] shorten(long[] counts) {
+        long[] shorter = new long[counts.length / 2];
+        for (int p = 0; p < counts.length; p++) {
+            shorter[p >>> 1] += counts[p];
+        }
+        return shorter;
+    }
+}
@@ -0,0 +1,77 @@
+package ru.bloof.nist;
+
+import org.apache.commons.math3.special.Gamma;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Streaming random excursions test, one p-value for each state -4..-1, 1..4 of the +-1 walk. The walk is
+ * split into cycles between returns to zero, the test is not applicable when there are fewer cycles than
+ * max(500, 0.005 * sqrt(n)).
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class RandomExcursionsAccumulator extends BitAccumulator {
+    private static final int[] STATES = {-4, -3, -2, -1, 1, 2, 3, 4};
+    private static final int MAX_VISITS = 5;
+    // visits in the current cycle and the number of cycles with k visits, indexed by state + 4
+    private final int[] visits = new int[9];
+    private final long[][] v = new long[9][MAX_VISITS + 1];
+    private long cycles;
+    private long position;
+
+    @Override
+    protected void update(long word, int count) {
+        for (int k = 0; k < count; k++) {
+            position += (word >>> k & 1) == 0 ? -1 : 1;
+            if (position == 0) {
+                endCycle();
+            } else if (position >= -4 && position <= 4) {
+                visits[(int) position + 4]++;
+            }
+        }
+    }
+
+    private void endCycle() {
+        for (int x = 0; x < visits.length; x++) {
+            v[x][Math.min(visits[x], MAX_VISITS)]++;
+            visits[x] = 0;
+        }
+        cycles++;
+    }
+
+    @Override
+    protected TestResult result(long bits) {
+        if (position != 0) {
+            endCycle();
+            position = 0;
+        }
+        if (cycles < Math.max(500, 0.005 * FastMath.sqrt(bits))) {
+            return new TestResult(NistTest.RANDOM_EXCURSIONS, bits, cycles);
+        }
+        double[] p = new double[STATES.length];
+        for (int i = 0; i < STATES.length; i++) {
+            int x = Math.abs(STATES[i]);
+            double chi_sq = 0;
+            for (int k = 0; k <= MAX_VISITS; k++) {
+                double expected = cycles * probability(x, k);
+                chi_sq += FastMath.pow(v[STATES[i] + 4][k] - expected, 2) / expected;
+            }
+            p[i] = Gamma.regularizedGammaQ(MAX_VISITS / 2., chi_sq / 2);
+        }
+        return new TestResult(NistTest.RANDOM_EXCURSIONS, bits, cycles, p);
+    }
+
+    /**
+     * Probability that a cycle visits state x exactly k times, or at least k times for the last k.
+     */
+    private static double probability(int x, int k) {
+        double q = 1 - 1. / (2 * x);
+        if (k == 0) {
+            return q;
+        }
+        if (k == MAX_VISITS) {
+            return FastMath.pow(q, MAX_VISITS - 1) / (2 * x);
+        }
+        return FastMath.pow(q, k - 1) / (4. * x * x);
+    }
+}
@@ -0,0 +1,47 @@
+package ru.bloof.nist;
+
+import org.apache.commons.math3.special.Erf;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Streaming random excursions variant test, one p-value for each state -9..-1, 1..9 of the +-1 walk
+ * comparing its total number of visits with the number of cycles. Not applicable under the same condition
+ * as {@link RandomExcursionsAccumulator}.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class RandomExcursionsVariantAccumulator extends BitAccumulator {
+    private static final int MAX_STATE = 9;
+    private final long[] visits = new long[2 * MAX_STATE + 1];
+    private long cycles;
+    private long position;
+
+    @Override
+    protected void update(long word, int count) {
+        for (int k = 0; k < count; k++) {
+            position += (word >>> k & 1) == 0 ? -1 : 1;
+            if (position == 0) {
+                cycles++;
+            } else if (position >= -MAX_STATE && position <= MAX_STATE) {
+                visits[(int) position + MAX_STATE]++;
+            }
+        }
+    }
+
+    @Override
+    protected TestResult result(long bits) {
+        long J = position == 0 ? cycles : cycles + 1;
+        if (J < Math.max(500, 0.005 * FastMath.sqrt(bits))) {
+            return new TestResult(NistTest.RANDOM_EXCURSIONS_VARIANT, bits, J);
+        }
+        double[] p = new double[2 * MAX_STATE];
+        int i = 0;
+        for (int x = -MAX_STATE; x <= MAX_STATE; x++) {
+            if (x != 0) {
+                long xi = visits[x + MAX_STATE];
+                p[i++] = Erf.erfc(FastMath.abs(xi - J) / FastMath.sqrt(2. * J * (4 * Math.abs(x) - 2)));
+            }
+        }
+        return new TestResult(NistTest.RANDOM_EXCURSIONS_VARIANT, bits, J, p);
+    }
+}
@@ -0,0 +1,39 @@
+package ru.bloof.nist;
+
+import org.apache.commons.math3.special.Erf;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Streaming runs test, the last bit of every word is carried over to count the transition into the next.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class RunsAccumulator extends BitAccumulator {
+    private long ones;
+    private long transitions;
+    private long lastBit = -1;
+
+    @Override
+    protected void update(long word, int count) {
+        ones += Long.bitCount(word);
+        if (lastBit >= 0 && lastBit != (word & 1)) {
+            transitions++;
+        }
+        // bit k of the difference tells whether bits k and k + 1 differ, the top one has no successor here
+        if (count > 1) {
+            transitions += Long.bitCount((word ^ word >>> 1) & (-1L >>> (65 - count)));
+        }
+        lastBit = word >>> (count - 1) & 1;
+    }
+
+    @Override
+    protected TestResult result(long bits) {
+        double pi = 1. * ones / bits;
+        if (pi - 0.5 >= 2 / FastMath.sqrt(bits)) {
+            return new TestResult(NistTest.RUNS, bits, Double.NaN, false, 0);
+        }
+        long v_n = 1 + transitions;
+        double p = Erf.erfc(FastMath.abs(v_n - 2 * bits * pi * (1 - pi)) / (2 * FastMath.sqrt(2 * bits) * pi * (1 - pi)));
+        return new TestResult(NistTest.RUNS, bits, v_n, p >= 0.1, p);
+    }
+}
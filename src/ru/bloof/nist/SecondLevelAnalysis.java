@@ -0,0 +1,200 @@
+package ru.bloof.nist;
+
+import org.apache.commons.math3.special.Gamma;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Runs a suite of tests over many sequences in parallel, one task per sequence, and checks the proportion
+ * of passing sequences and the uniformity of the p-values for every p-value a test reports.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class SecondLevelAnalysis {
+    private static final int BINS = 10;
+    private final ForkJoinPool pool;
+
+    public SecondLevelAnalysis() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public SecondLevelAnalysis(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Tests {@code sequences} consecutive sequences of the generator output. The generator is only used
+     * from the calling thread, which stays at most a few sequences ahead of the tests.
+     */
+    public List<SecondLevelResult> run(Supplier<? extends List<? extends BitAccumulator>> suite, Random generator,
+                                       int sequences, int sequenceBytes) {
+        Semaphore inFlight = new Semaphore(2 * pool.getParallelism());
+        Batch batch = new Batch(sequences);
+        for (int i = 0; i < sequences; i++) {
+            byte[] sequence = new byte[sequenceBytes];
+            generator.nextBytes(sequence);
+            inFlight.acquireUninterruptibly();
+            batch.execute(pool, i, () -> {
+                try {
+                    return test(suite.get(), ByteBuffer.wrap(sequence));
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+        return analyze(batch.await());
+    }
+
+    /**
+     * Tests every complete sequence of the file, each mapped by its own task.
+     */
+    public List<SecondLevelResult> run(Supplier<? extends List<? extends BitAccumulator>> suite, Path file,
+                                       int sequenceBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int sequences = Math.toIntExact(channel.size() / sequenceBytes);
+            Batch batch = new Batch(sequences);
+            for (int i = 0; i < sequences; i++) {
+                long position = (long) i * sequenceBytes;
+                batch.execute(pool, i, () -> {
+                    try {
+                        return test(suite.get(), channel.map(FileChannel.MapMode.READ_ONLY, position, sequenceBytes));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            try {
+                return analyze(batch.await());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static List<TestResult> test(List<? extends BitAccumulator> tests, ByteBuffer sequence) {
+        List<TestResult> results = new ArrayList<>(tests.size());
+        for (BitAccumulator test : tests) {
+            test.update(sequence.duplicate());
+            results.add(test.finish());
+        }
+        return results;
+    }
+
+    /**
+     * Results of tasks run on a pool, each stored by its index as soon as it finishes. Nothing keeps a finished
+     * task, so the sequence it tested can be collected while the others still run.
+     */
+    private static final class Batch {
+        private final AtomicReferenceArray<List<TestResult>> results;
+        private final CountDownLatch done;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Batch(int count) {
+            results = new AtomicReferenceArray<>(count);
+            done = new CountDownLatch(count);
+        }
+
+        void execute(ForkJoinPool pool, int index, Callable<List<TestResult>> task) {
+            pool.execute(() -> {
+                try {
+                    results.set(index, task.call());
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        /**
+         * Waits for all tasks and rethrows the first failure, checked exceptions wrapped.
+         */
+        List<List<TestResult>> await() {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the tests", e);
+            }
+            Throwable f = failure.get();
+            if (f instanceof RuntimeException) {
+                throw (RuntimeException) f;
+            }
+            if (f instanceof Error) {
+                throw (Error) f;
+            }
+            if (f != null) {
+                throw new IllegalStateException("Test failed", f);
+            }
+            List<List<TestResult>> list = new ArrayList<>(results.length());
+            for (int i = 0; i < results.length(); i++) {
+                list.add(results.get(i));
+            }
+            return list;
+        }
+    }
+
+    /**
+     * Second-level results for the first-level results of every sequence, tests that were not applicable
+     * to a sequence are left out for it.
+     */
+    public static List<SecondLevelResult> analyze(List<? extends List<TestResult>> results) {
+        Map<NistTest, List<int[]>> bins = new LinkedHashMap<>();
+        Map<NistTest, List<int[]>> counts = new LinkedHashMap<>();
+        for (List<TestResult> sequence : results) {
+            for (TestResult result : sequence) {
+                List<int[]> testBins = bins.computeIfAbsent(result.getTest(), t -> new ArrayList<>());
+                List<int[]> testCounts = counts.computeIfAbsent(result.getTest(), t -> new ArrayList<>());
+                double[] pValues = result.getPValues();
+                for (int i = 0; i < pValues.length; i++) {
+                    if (testBins.size() <= i) {
+                        testBins.add(new int[BINS]);
+                        // sequences, passed
+                        testCounts.add(new int[2]);
+                    }
+                    testBins.get(i)[Math.min((int) (pValues[i] * BINS), BINS - 1)]++;
+                    testCounts.get(i)[0]++;
+                    if (pValues[i] >= TestResult.SIGNIFICANCE) {
+                        testCounts.get(i)[1]++;
+                    }
+                }
+            }
+        }
+        List<SecondLevelResult> analysis = new ArrayList<>();
+        for (Map.Entry<NistTest, List<int[]>> entry : bins.entrySet()) {
+            List<int[]> testCounts = counts.get(entry.getKey());
+            for (int i = 0; i < entry.getValue().size(); i++) {
+                int sequences = testCounts.get(i)[0];
+                analysis.add(new SecondLevelResult(entry.getKey(), i, sequences, testCounts.get(i)[1],
+                        uniformity(entry.getValue().get(i), sequences)));
+            }
+        }
+        return analysis;
+    }
+
+    private static double uniformity(int[] bins, int sequences) {
+        double expected = (double) sequences / BINS;
+        double chi_sq = 0;
+        for (int count : bins) {
+            chi_sq += (count - expected) * (count - expected) / expected;
+        }
+        return Gamma.regularizedGammaQ((BINS - 1) / 2., chi_sq / 2);
+    }
+}
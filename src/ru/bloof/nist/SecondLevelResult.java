@@ -0,0 +1,75 @@
+package ru.bloof.nist;
+
+/**
+ * Second-level analysis of one p-value of a test over many sequences: the proportion of sequences that
+ * passed and the uniformity of the p-values.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class SecondLevelResult {
+    public static final double UNIFORMITY_SIGNIFICANCE = 0.0001;
+    private final NistTest test;
+    private final int index;
+    private final int sequences;
+    private final int passed;
+    private final double uniformity;
+
+    public SecondLevelResult(NistTest test, int index, int sequences, int passed, double uniformity) {
+        this.test = test;
+        this.index = index;
+        this.sequences = sequences;
+        this.passed = passed;
+        this.uniformity = uniformity;
+    }
+
+    public NistTest getTest() {
+        return test;
+    }
+
+    /**
+     * Index of the p-value among those the test reports, like the template of a template test.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Number of sequences the test was applicable to.
+     */
+    public int getSequences() {
+        return sequences;
+    }
+
+    public int getPassed() {
+        return passed;
+    }
+
+    public double getProportion() {
+        return sequences == 0 ? 0 : (double) passed / sequences;
+    }
+
+    /**
+     * Lowest acceptable proportion, three standard deviations below the expected one.
+     */
+    public double getMinProportion() {
+        double p = 1 - TestResult.SIGNIFICANCE;
+        return p - 3 * Math.sqrt(p * TestResult.SIGNIFICANCE / sequences);
+    }
+
+    /**
+     * P-value of the chi-square test that the p-values are uniform over ten bins.
+     */
+    public double getUniformity() {
+        return uniformity;
+    }
+
+    public boolean isPassed() {
+        return sequences > 0 && getProportion() >= getMinProportion() && uniformity >= UNIFORMITY_SIGNIFICANCE;
+    }
+
+    @Override
+    public String toString() {
+        return test.getName() + " #" + index + ": " + passed + "/" + sequences + " passed, uniformity p-value "
+                + uniformity + (isPassed() ? ", passed" : ", failed");
+    }
+}
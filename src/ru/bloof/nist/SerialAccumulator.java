@@ -0,0 +1,45 @@
+package ru.bloof.nist;
+
+import org.apache.commons.math3.special.Gamma;
+
+/**
+ * Streaming serial test for patterns of m bits, two p-values.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class SerialAccumulator extends PatternAccumulator {
+    private final int m;
+
+    public SerialAccumulator(int m) {
+        super(m);
+        if (m < 3) {
+            throw new IllegalArgumentException("Pattern length must be at least 3: " + m);
+        }
+        this.m = m;
+    }
+
+    @Override
+    protected TestResult result(long bits) {
+        if (bits < m) {
+            return new TestResult(NistTest.SERIAL, bits, Double.NaN);
+        }
+        long[] counts = counts();
+        double psi_m = psiSquared(counts, bits);
+        counts = shorten(counts);
+        double psi_m1 = psiSquared(counts, bits);
+        double psi_m2 = psiSquared(shorten(counts), bits);
+        double delta = psi_m - psi_m1;
+        double delta2 = psi_m - 2 * psi_m1 + psi_m2;
+        double p1 = Gamma.regularizedGammaQ(Math.pow(2, m - 2), delta / 2);
+        double p2 = Gamma.regularizedGammaQ(Math.pow(2, m - 3), delta2 / 2);
+        return new TestResult(NistTest.SERIAL, bits, delta, p1, p2);
+    }
+
+    private static double psiSquared(long[] counts, long bits) {
+        double sum = 0;
+        for (long count : counts) {
+            sum += (double) count * count;
+        }
+        return sum * counts.length / bits - bits;
+    }
+}
@@ -0,0 +1,58 @@
+package ru.bloof.nist;
+
+import org.apache.commons.math3.special.Erf;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Streaming discrete Fourier transform (spectral) test. The stream is transformed block by block and the
+ * counts of peaks under the threshold are summed over the blocks, bits of an incomplete last block are
+ * discarded. A block takes 8 bytes per bit plus the transform buffers.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class SpectralAccumulator extends BitAccumulator {
+    private final int bitsInBlock;
+    private final Spectrum spectrum;
+    private final double[] block;
+    private final double[] moduli;
+    private final double threshold;
+    private int blockFill;
+    private long blocksCount;
+    private long peaksUnder;
+
+    public SpectralAccumulator(int bitsInBlock) {
+        this.bitsInBlock = bitsInBlock;
+        spectrum = new Spectrum(bitsInBlock);
+        block = new double[bitsInBlock];
+        moduli = new double[bitsInBlock / 2];
+        threshold = FastMath.sqrt(FastMath.log(1 / 0.05) * bitsInBlock);
+    }
+
+    @Override
+    protected void update(long word, int count) {
+        for (int k = 0; k < count; k++) {
+            block[blockFill++] = (word >>> k & 1) == 0 ? -1 : 1;
+            if (blockFill == bitsInBlock) {
+                spectrum.moduli(block, moduli, moduli.length);
+                for (double m : moduli) {
+                    if (m < threshold) {
+                        peaksUnder++;
+                    }
+                }
+                blocksCount++;
+                blockFill = 0;
+            }
+        }
+    }
+
+    @Override
+    protected TestResult result(long bits) {
+        if (blocksCount == 0) {
+            return new TestResult(NistTest.SPECTRAL, bits, Double.NaN);
+        }
+        double expected = blocksCount * 0.95 * bitsInBlock / 2;
+        double d = (peaksUnder - expected) / FastMath.sqrt(blocksCount * bitsInBlock * 0.95 * 0.05 / 4);
+        double p = Erf.erfc(FastMath.abs(d) / FastMath.sqrt(2));
+        return new TestResult(NistTest.SPECTRAL, bits, d, p);
+    }
+}
@@ -0,0 +1,89 @@
+package ru.bloof.nist;
+
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+
+import java.util.Arrays;
+
+/**
+ * Moduli of the discrete Fourier transform of real sequences of a fixed length. Lengths that are not powers
+ * of two go through Bluestein's algorithm: the transform is written as a convolution with a chirp and
+ * computed by power-of-two transforms of at least twice the length. Buffers are reused between calls, so
+ * an instance is not thread-safe.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+final class Spectrum {
+    private final int n, size;
+    private final double[] chirpRe, chirpIm;
+    private final double[][] kernel;
+    private final double[][] data;
+
+    Spectrum(int n) {
+        if (n < 2) {
+            throw new IllegalArgumentException("Sequence must have at least 2 elements: " + n);
+        }
+        this.n = n;
+        if (Integer.bitCount(n) == 1) {
+            size = n;
+            chirpRe = chirpIm = null;
+            kernel = null;
+        } else {
+            size = Integer.highestOneBit(2 * n - 2) << 1;
+            // w_k = exp(-i pi k^2 / n), k^2 taken mod 2n to keep the angle small
+            chirpRe = new double[n];
+            chirpIm = new double[n];
+            for (int k = 0; k < n; k++) {
+                double angle = Math.PI * ((long) k * k % (2L * n)) / n;
+                chirpRe[k] = Math.cos(angle);
+                chirpIm[k] = -Math.sin(angle);
+            }
+            kernel = new double[2][size];
+            for (int k = 0; k < n; k++) {
+                kernel[0][k] = chirpRe[k];
+                kernel[1][k] = -chirpIm[k];
+                if (k > 0) {
+                    kernel[0][size - k] = chirpRe[k];
+                    kernel[1][size - k] = -chirpIm[k];
+                }
+            }
+            FastFourierTransformer.transformInPlace(kernel, DftNormalization.STANDARD, TransformType.FORWARD);
+        }
+        data = new double[2][size];
+    }
+
+    /**
+     * Writes |X_k| for k < count into {@code moduli}, X being the transform of the first n values of x.
+     */
+    void moduli(double[] x, double[] moduli, int count) {
+        double[] re = data[0], im = data[1];
+        if (kernel == null) {
+            System.arraycopy(x, 0, re, 0, n);
+            Arrays.fill(im, 0);
+            FastFourierTransformer.transformInPlace(data, DftNormalization.STANDARD, TransformType.FORWARD);
+            for (int k = 0; k < count; k++) {
+                moduli[k] = Math.hypot(re[k], im[k]);
+            }
+            return;
+        }
+        for (int k = 0; k < n; k++) {
+            re[k] = x[k] * chirpRe[k];
+            im[k] = x[k] * chirpIm[k];
+        }
+        Arrays.fill(re, n, size, 0);
+        Arrays.fill(im, n, size, 0);
+        FastFourierTransformer.transformInPlace(data, DftNormalization.STANDARD, TransformType.FORWARD);
+        double[] kr = kernel[0], ki = kernel[1];
+        for (int k = 0; k < size; k++) {
+            double r = re[k] * kr[k] - im[k] * ki[k];
+            im[k] = re[k] * ki[k] + im[k] * kr[k];
+            re[k] = r;
+        }
+        FastFourierTransformer.transformInPlace(data, DftNormalization.STANDARD, TransformType.INVERSE);
+        // |w_k| = 1, so the final multiplication by the chirp does not change the modulus
+        for (int k = 0; k < count; k++) {
+            moduli[k] = Math.hypot(re[k], im[k]);
+        }
+    }
+}
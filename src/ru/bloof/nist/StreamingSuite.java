@@ -0,0 +1,180 @@
+package ru.bloof.nist;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Runs several streaming tests over one pass of a generator or a file in constant memory. Every chunk is
+ * handed to all tests at once, each test processing it in its own task, and the next chunk is generated
+ * or mapped while they work.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class StreamingSuite {
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final long MAPPED_CHUNK_SIZE = 1 << 26;
+    /**
+     * Longest block the spectral test of {@link #create} transforms at once. The transform keeps the block in
+     * memory as doubles, about half a gigabyte for this length with its buffers, so longer sequences are
+     * transformed in blocks of this many bits.
+     */
+    public static final int MAX_SPECTRAL_BLOCK = 1 << 24;
+    private final ForkJoinPool pool;
+
+    public StreamingSuite() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public StreamingSuite(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Frequency, block frequency with 32-bit blocks, runs, longest run and matrix rank tests.
+     */
+    public static List<BitAccumulator> defaultTests() {
+        return new ArrayList<>(Arrays.asList(
+                new FrequencyAccumulator(),
+                new BlockFrequencyAccumulator(32),
+                new RunsAccumulator(),
+                new LongestRunAccumulator(),
+                new BinaryMatrixRankAccumulator()));
+    }
+
+    /**
+     * All SP 800-22 tests in the order of {@link NistTest}.
+     */
+    public static List<BitAccumulator> allTests(long sequenceBits) {
+        List<BitAccumulator> tests = new ArrayList<>();
+        for (NistTest test : NistTest.values()) {
+            tests.add(create(test, sequenceBits));
+        }
+        return tests;
+    }
+
+    /**
+     * The test with the parameters NIST recommends for sequences of the given length, the spectral test
+     * transforming the whole sequence if it is at most {@link #MAX_SPECTRAL_BLOCK} bits long.
+     */
+    public static BitAccumulator create(NistTest test, long sequenceBits) {
+        switch (test) {
+            case FREQUENCY:
+                return new FrequencyAccumulator();
+            case BLOCK_FREQUENCY:
+                return new BlockFrequencyAccumulator(128);
+            case RUNS:
+                return new RunsAccumulator();
+            case LONGEST_RUN:
+                return new LongestRunAccumulator();
+            case BINARY_MATRIX_RANK:
+                return new BinaryMatrixRankAccumulator();
+            case SPECTRAL:
+                return new SpectralAccumulator((int) Math.min(sequenceBits, MAX_SPECTRAL_BLOCK));
+            case NON_OVERLAPPING_TEMPLATE:
+                return new NonOverlappingTemplateAccumulator(9, (int) Math.min(sequenceBits / 8, Integer.MAX_VALUE));
+            case OVERLAPPING_TEMPLATE:
+                return new OverlappingTemplateAccumulator();
+            case UNIVERSAL:
+                return new UniversalAccumulator(UniversalAccumulator.blockLength(sequenceBits));
+            case LINEAR_COMPLEXITY:
+                return new LinearComplexityAccumulator(500);
+            case SERIAL:
+                return new SerialAccumulator(16);
+            case APPROXIMATE_ENTROPY:
+                return new ApproximateEntropyAccumulator(10);
+            case CUMULATIVE_SUMS:
+                return new CumulativeSumsAccumulator();
+            case RANDOM_EXCURSIONS:
+                return new RandomExcursionsAccumulator();
+            case RANDOM_EXCURSIONS_VARIANT:
+                return new RandomExcursionsVariantAccumulator();
+            default:
+                throw new IllegalArgumentException("Unknown test " + test);
+        }
+    }
+
+    /**
+     * Tests {@code bytes} bytes of the generator output, the generator is only used from the calling thread.
+     */
+    public List<TestResult> run(List<? extends BitAccumulator> tests, Random generator, long bytes) {
+        byte[] current = new byte[(int) Math.min(CHUNK_SIZE, bytes)];
+        byte[] next = new byte[current.length];
+        long remaining = bytes;
+        int length = fill(generator, current, remaining);
+        while (length > 0) {
+            List<ForkJoinTask<?>> tasks = submit(tests, ByteBuffer.wrap(current, 0, length));
+            remaining -= length;
+            length = fill(generator, next, remaining);
+            tasks.forEach(ForkJoinTask::join);
+            byte[] t = current;
+            current = next;
+            next = t;
+        }
+        return finish(tests);
+    }
+
+    /**
+     * Tests the whole file, mapping it piece by piece.
+     */
+    public List<TestResult> run(List<? extends BitAccumulator> tests, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer current = size > 0 ? map(channel, 0, size) : null;
+            for (long position = 0; position < size; ) {
+                List<ForkJoinTask<?>> tasks = submit(tests, current);
+                position += current.capacity();
+                MappedByteBuffer next = position < size ? map(channel, position, size) : null;
+                tasks.forEach(ForkJoinTask::join);
+                current = next;
+            }
+        }
+        return finish(tests);
+    }
+
+    private static int fill(Random generator, byte[] chunk, long remaining) {
+        int length = (int) Math.min(chunk.length, remaining);
+        if (length == chunk.length) {
+            generator.nextBytes(chunk);
+        } else if (length > 0) {
+            byte[] tail = new byte[length];
+            generator.nextBytes(tail);
+            System.arraycopy(tail, 0, chunk, 0, length);
+        }
+        return length;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                Math.min(MAPPED_CHUNK_SIZE, size - position));
+        // start paging in the next piece while the tests work on the current one
+        buffer.load();
+        return buffer;
+    }
+
+    private List<ForkJoinTask<?>> submit(List<? extends BitAccumulator> tests, ByteBuffer chunk) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(tests.size());
+        for (BitAccumulator test : tests) {
+            ByteBuffer view = chunk.duplicate();
+            tasks.add(pool.submit(() -> test.update(view)));
+        }
+        return tasks;
+    }
+
+    private static List<TestResult> finish(List<? extends BitAccumulator> tests) {
+        List<TestResult> results = new ArrayList<>(tests.size());
+        for (BitAccumulator test : tests) {
+            results.add(test.finish());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,107 @@
+package ru.bloof.nist;
+
+import java.util.Arrays;
+
+/**
+ * Outcome of a statistical test: its statistic, one or more p-values and the verdict. A test that is not
+ * applicable to the sequence, like random excursions on a walk with too few cycles, has no p-values.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class TestResult {
+    public static final double SIGNIFICANCE = 0.01;
+    private final NistTest test;
+    private final long bits;
+    private final double statistic;
+    private final double[] pValues;
+    private final boolean passed;
+
+    public TestResult(NistTest test, long bits, double statistic, boolean passed, double... pValues) {
+        this.test = test;
+        this.bits = bits;
+        this.statistic = statistic;
+        this.pValues = pValues.clone();
+        this.passed = passed && isApplicable();
+    }
+
+    /**
+     * Result judged by {@link #passed(double...)}.
+     */
+    public TestResult(NistTest test, long bits, double statistic, double... pValues) {
+        this(test, bits, statistic, passed(pValues), pValues);
+    }
+
+    /**
+     * Whether every p-value reaches the significance level divided by their number, so a test reporting
+     * many p-values does not fail more often than a test reporting one. False without p-values.
+     */
+    public static boolean passed(double... pValues) {
+        if (pValues.length == 0) {
+            return false;
+        }
+        for (double p : pValues) {
+            if (!(p >= SIGNIFICANCE / pValues.length)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public NistTest getTest() {
+        return test;
+    }
+
+    public String getName() {
+        return test.getName();
+    }
+
+    /**
+     * Length of the tested sequence.
+     */
+    public long getBits() {
+        return bits;
+    }
+
+    public double getStatistic() {
+        return statistic;
+    }
+
+    /**
+     * The smallest p-value of the test, NaN if it is not applicable.
+     */
+    public double getPValue() {
+        if (!isApplicable()) {
+            return Double.NaN;
+        }
+        double min = 1;
+        for (double p : pValues) {
+            min = Math.min(min, p);
+        }
+        return min;
+    }
+
+    public double[] getPValues() {
+        return pValues.clone();
+    }
+
+    public boolean isApplicable() {
+        return pValues.length > 0;
+    }
+
+    /**
+     * Whether the test was applicable and passed.
+     */
+    public boolean isPassed() {
+        return passed;
+    }
+
+    @Override
+    public String toString() {
+        if (!isApplicable()) {
+            return getName() + " over " + bits + " bits: not applicable";
+        }
+        return getName() + " over " + bits + " bits: statistic " + statistic
+                + ", p-value" + (pValues.length == 1 ? " " + pValues[0] : "s " + Arrays.toString(pValues))
+                + (passed ? ", passed" : ", failed");
+    }
+}
@@ -0,0 +1,80 @@
+package ru.bloof.nist;
+
+import org.apache.commons.math3.special.Erf;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * Streaming Maurer's universal statistical test on L-bit blocks: the first 10 * 2^L blocks initialize the
+ * table of last occurrences, all following complete blocks are tested.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class UniversalAccumulator extends BitAccumulator {
+    private static final double[] EXPECTED_VALUE = {0, 0.7326495, 1.5374383, 2.4016068, 3.3112247, 4.2534266,
+            5.2177052, 6.1962507, 7.1836656, 8.1764248, 9.1723243, 10.170032, 11.168765, 12.168070, 13.167693,
+            14.167488, 15.167379};
+    private static final double[] VARIANCE = {0, 0.690, 1.338, 1.901, 2.358, 2.705, 2.954, 3.125, 3.238, 3.311,
+            3.356, 3.384, 3.401, 3.410, 3.416, 3.419, 3.421};
+    // shortest sequences for block lengths 6..16
+    private static final long[] MIN_BITS = {387840, 904960, 2068480, 4654080, 10342400, 22753280, 49643520,
+            107560960, 231669760, 496435200, 1059061760};
+    private final int L;
+    private final long initBlocks;
+    private final long[] lastSeen;
+    private long blocksCount;
+    private long block;
+    private int blockFill;
+    private double sum;
+
+    public UniversalAccumulator(int L) {
+        if (L < 1 || L >= EXPECTED_VALUE.length) {
+            throw new IllegalArgumentException("Block length must be in [1, 16]: " + L);
+        }
+        this.L = L;
+        initBlocks = 10L << L;
+        lastSeen = new long[1 << L];
+    }
+
+    /**
+     * Block length NIST recommends for a sequence of the given length, at least 6.
+     */
+    public static int blockLength(long bits) {
+        int L = 6;
+        while (L - 6 + 1 < MIN_BITS.length && bits >= MIN_BITS[L - 6 + 1]) {
+            L++;
+        }
+        return L;
+    }
+
+    @Override
+    protected void update(long word, int count) {
+        for (int offset = 0; offset < count; ) {
+            int take = Math.min(L - blockFill, count - offset);
+            block |= bits(word, offset, take) << blockFill;
+            blockFill += take;
+            offset += take;
+            if (blockFill == L) {
+                long i = ++blocksCount;
+                if (i > initBlocks) {
+                    sum += FastMath.log(i - lastSeen[(int) block]);
+                }
+                lastSeen[(int) block] = i;
+                block = 0;
+                blockFill = 0;
+            }
+        }
+    }
+
+    @Override
+    protected TestResult result(long bits) {
+        long K = blocksCount - initBlocks;
+        if (K <= 0) {
+            return new TestResult(NistTest.UNIVERSAL, bits, Double.NaN);
+        }
+        double fn = sum / FastMath.log(2) / K;
+        double c = 0.7 - 0.8 / L + (4 + 32. / L) * FastMath.pow(K, -3. / L) / 15;
+        double sigma = c * FastMath.sqrt(VARIANCE[L] / K);
+        double p = Erf.erfc(FastMath.abs(fn - EXPECTED_VALUE[L]) / (FastMath.sqrt(2) * sigma));
+        return new TestResult(NistTest.UNIVERSAL, bits, fn, p);
+    }
+}
@@ -0,0 +1,118 @@
+package ru.bloof.prng;
+
+import ru.bloof.device.UrandomSource;
+
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * JCA provider of the {@code BBS} {@link SecureRandom}, for example
+ * {@code SecureRandom.getInstance("BBS", new BBSProvider())} or after {@code Security.addProvider}.
+ * <p>
+ * All instances of the provider's {@code SecureRandom} share one pool of per-thread generators split off a root
+ * generator, so the algorithm is registered as {@code ThreadSafe} and the JDK calls it without locking. The root
+ * is created on first use, with a modulus and seed from the seed source, and {@code generateSeed} is served by the
+ * same source. The default seed source is a {@link DeviceRandom} over the input devices, or over
+ * {@link UrandomSource} where there are none, as on headless servers.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class BBSProvider extends Provider {
+    public static final String NAME = "BBS";
+    public static final String ALGORITHM = "BBS";
+    public static final int DEFAULT_BITS = 2048;
+    private final int bits;
+    private final transient Supplier<? extends Random> seedSources;
+    // not the provider's own monitor, which the JDK holds for service lookups while the lazy fields may wait
+    // for entropy
+    private final transient Object lock = new Object();
+    private transient volatile ThreadLocalBBSRandom pool;
+    private transient volatile Random seedSource;
+
+    public BBSProvider() {
+        this(DEFAULT_BITS);
+    }
+
+    /**
+     * @param bits size of the modulus generated on first use
+     */
+    public BBSProvider(int bits) {
+        this(bits, BBSProvider::defaultSeedSource);
+    }
+
+    /**
+     * @param bits        size of the modulus generated on first use
+     * @param seedSources called once, on first use, for the source of the root seed and of {@code generateSeed}
+     */
+    // Provider(String, String, String) only exists since Java 9, and this is built for Java 8
+    @SuppressWarnings("deprecation")
+    public BBSProvider(int bits, Supplier<? extends Random> seedSources) {
+        super(NAME, 1.0, "Blum Blum Shub SecureRandom");
+        this.bits = bits;
+        this.seedSources = seedSources;
+        putService(new Service(this, "SecureRandom", ALGORITHM, BBSSecureRandomSpi.class.getName(), null,
+                Collections.singletonMap("ThreadSafe", "true")) {
+            @Override
+            public Object newInstance(Object constructorParameter) {
+                return new BBSSecureRandomSpi(BBSProvider.this);
+            }
+        });
+    }
+
+    /**
+     * Provider over an existing root generator, {@code generateSeed} is still served by the default seed source.
+     */
+    public BBSProvider(SplittableBBSRandom root) {
+        this(root, BBSProvider::defaultSeedSource);
+    }
+
+    public BBSProvider(SplittableBBSRandom root, Supplier<? extends Random> seedSources) {
+        this(root.getModulus().bitLength(), seedSources);
+        pool = new ThreadLocalBBSRandom(root);
+    }
+
+    /**
+     * Device source over the input devices, falling back to {@code /dev/urandom} when there are none to read.
+     */
+    public static DeviceRandom defaultSeedSource() {
+        try {
+            return new DeviceRandom();
+        } catch (RuntimeException e) {
+            return new DeviceRandom(new UrandomSource());
+        }
+    }
+
+    ThreadLocalBBSRandom getPool() {
+        ThreadLocalBBSRandom p = pool;
+        if (p == null) {
+            synchronized (lock) {
+                p = pool;
+                if (p == null) {
+                    Random seeds = getSeedSource();
+                    BlumModulus modulus = BlumModulus.generate(bits, seeds);
+                    p = new ThreadLocalBBSRandom(new SplittableBBSRandom(modulus, seeds,
+                            BBSRandom.maxBitsPerStep(bits), true));
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    Random getSeedSource() {
+        Random d = seedSource;
+        if (d == null) {
+            synchronized (lock) {
+                d = seedSource;
+                if (d == null) {
+                    d = seedSources.get();
+                    seedSource = d;
+                }
+            }
+        }
+        return d;
+    }
+}
@@ -1,66 +1,527 @@
 package ru.bloof.prng;
 
+import ru.bloof.metrics.Counter;
+import ru.bloof.metrics.Events;
+import ru.bloof.metrics.Metrics;
+
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 
 /**
+ * Blum-Blum-Shub generator.
+ * <p>
+ * Every method that reads or moves the stream synchronizes on the generator, once per call and not per squaring,
+ * so a {@link Checkpointer} or another thread holding that monitor always sees a consistent state. That costs an
+ * uncontended lock per call; a generator should still have a single owner thread for its output.
+ *
  * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
  */
 public class BBSRandom extends Random {
-    private static final BigInteger BIG_THREE = BigInteger.valueOf(3);
-    private static final BigInteger BIG_FOUR = BigInteger.valueOf(4);
-    private static final BigInteger BIG_TWO = BigInteger.valueOf(2);
+    private static final int STREAM_CHARACTERISTICS = Spliterator.SIZED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+    static final Counter SQUARINGS = Metrics.counter("prng.squarings");
+    static final Counter BITS = Metrics.counter("prng.bits");
+    /**
+     * Squarings a generator counts on its own before adding them to the shared counters between whole outputs.
+     */
+    private static final int COUNTER_BATCH = 1024;
+    private static final AtomicReferenceFieldUpdater<BBSRandom, BigInteger> RESEED =
+            AtomicReferenceFieldUpdater.newUpdater(BBSRandom.class, BigInteger.class, "reseed");
     private final BigInteger n;
-    private BigInteger state;
+    private final BlumModulus modulus;
+    private final int bitsPerStep;
+    private final SquaringEngine engine;
+    private BigInteger origin;
+    private long position;
+    private int buffer, buffered;
+    // squarings not yet added to the shared counters
+    private int squarings;
+    // published by a Reseeder, taken over by the next call that produces output
+    private volatile BigInteger reseed;
+    // run by the thread that moves the position to reseedAt, which is re-armed on every restart
+    private Runnable reseedDue;
+    private long reseedEveryBits = Long.MAX_VALUE, reseedAt = Long.MAX_VALUE;
 
     public BBSRandom(int bits, Random initRnd) {
+        this(bits, initRnd, 1);
+    }
+
+    /**
+     * @param bitsPerStep how many least significant bits of every state go to the output,
+     *                    at most {@link #maxBitsPerStep(int)} for the modulus size
+     */
+    public BBSRandom(int bits, Random initRnd, int bitsPerStep) {
+        checkBitsPerStep(bits, bitsPerStep);
+        this.bitsPerStep = bitsPerStep;
         try {
-            n = generateN(bits, initRnd);
-            byte[] seed = new byte[bits / 8];
-            System.err.println("Generating seed");
-            initRnd.nextBytes(seed);
-            System.err.println("Seed found");
-            setSeed(seed);
+            n = BlumModulus.generate(bits, initRnd).getN();
+            modulus = new BlumModulus(n);
+            engine = new MontgomerySquarer(n);
+            seed(initRnd, bits / 8);
         } finally {
-            if (initRnd instanceof DeviceRandom) {
-                ((DeviceRandom) initRnd).close();
-            }
+            closeIfDevice(initRnd);
+        }
+    }
+
+    /**
+     * Generator over an existing modulus, the seed is taken from {@code seedSource}.
+     */
+    protected BBSRandom(BlumModulus modulus, Random seedSource, int bitsPerStep) {
+        this(modulus, seedSource, bitsPerStep, false);
+    }
+
+    /**
+     * @param crt square modulo the factors of the modulus separately, which needs the factors
+     */
+    protected BBSRandom(BlumModulus modulus, Random seedSource, int bitsPerStep, boolean crt) {
+        checkBitsPerStep(modulus.bitLength(), bitsPerStep);
+        this.bitsPerStep = bitsPerStep;
+        n = modulus.getN();
+        this.modulus = modulus;
+        engine = crt ? new CrtSquarer(modulus) : new MontgomerySquarer(n);
+        seed(seedSource, (modulus.bitLength() + 7) / 8);
+    }
+
+    /**
+     * Generator restored from a snapshot, continuing exactly where the snapshot was taken.
+     */
+    BBSRandom(GeneratorSnapshot snapshot) {
+        modulus = snapshot.getModulus();
+        checkBitsPerStep(modulus.bitLength(), snapshot.getBitsPerStep());
+        bitsPerStep = snapshot.getBitsPerStep();
+        n = modulus.getN();
+        engine = snapshot.isCrt() ? new CrtSquarer(modulus) : new MontgomerySquarer(n);
+        origin = snapshot.getOrigin();
+        engine.setState(snapshot.getState());
+        position = snapshot.getPosition();
+        buffer = snapshot.getBuffer();
+        buffered = snapshot.getBuffered();
+    }
+
+    /**
+     * Copy that continues the same stream independently of the original.
+     */
+    BBSRandom(BBSRandom other) {
+        bitsPerStep = other.bitsPerStep;
+        n = other.n;
+        modulus = other.modulus;
+        synchronized (other) {
+            engine = other.engine.copy();
+            origin = other.origin;
+            position = other.position;
+            buffer = other.buffer;
+            buffered = other.buffered;
+        }
+    }
+
+    /**
+     * Largest number of bits that may be taken from one state, floor(log2(log2 n)).
+     */
+    public static int maxBitsPerStep(int bits) {
+        return 31 - Integer.numberOfLeadingZeros(bits);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    static void checkBitsPerStep(int bits, int bitsPerStep) {
+        if (bitsPerStep < 1 || bitsPerStep > maxBitsPerStep(bits)) {
+            throw new IllegalArgumentException("Bits per step must be in [1, " + maxBitsPerStep(bits) + "]: "
+                    + bitsPerStep);
         }
     }
 
-    private static BigInteger generateN(int bits, Random rand) {
-        BigInteger p = getPrime(bits / 2, rand);
-        System.err.println("Build first prime");
-        BigInteger q = getPrime(bits / 2, rand);
-        System.err.println("Build second prime");
-        while (p.equals(q)) {
-            System.err.println("Rebuilding second prime");
-            q = getPrime(bits, rand);
+    static void closeIfDevice(Random rnd) {
+        if (rnd instanceof DeviceRandom) {
+            ((DeviceRandom) rnd).close();
         }
-        System.err.println("Primes found");
-        return p.multiply(q);
     }
 
-    private static BigInteger getPrime(int bits, Random rand) {
-        BigInteger p;
-        do {
-            p = new BigInteger(bits, 10, rand);
-        } while (!p.mod(BIG_FOUR).equals(BIG_THREE));
-        return p;
+    private void seed(Random seedSource, int bytes) {
+        byte[] seed = new byte[bytes];
+        long start = System.nanoTime();
+        seedSource.nextBytes(seed);
+        // splits are seeded by another generator without waiting, an event for each would flood the recording
+        if (!(seedSource instanceof BBSRandom)) {
+            Events.seeded(seedSource.getClass().getName(), bytes, start);
+        }
+        setSeed(seed);
     }
 
     private void setSeed(byte[] seed) {
         BigInteger s = new BigInteger(1, seed);
-        state = s.mod(n);
+        origin = s.mod(n);
+        engine.setState(origin);
+    }
+
+    public int getBitsPerStep() {
+        return bitsPerStep;
+    }
+
+    /**
+     * Whether the state is squared modulo the factors of the modulus.
+     */
+    public boolean isCrt() {
+        return engine instanceof CrtSquarer;
+    }
+
+    /**
+     * Number of output bits produced or skipped since seeding or the last reseed by a {@link Reseeder}.
+     */
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    @Override
+    protected synchronized int next(int bits) {
+        int result = (int) nextBits(bits);
+        if (squarings >= COUNTER_BATCH) {
+            flushCounters();
+        }
+        return result;
     }
 
     @Override
-    protected int next(int bits) {
-        int result = 0;
-        for (int i = 0; i < bits; i++) {
-            state = state.modPow(BIG_TWO, n);
-            result = (result << 1) | (state.testBit(0) ? 1 : 0);
+    public synchronized long nextLong() {
+        long result = nextBits(64);
+        if (squarings >= COUNTER_BATCH) {
+            flushCounters();
+        }
+        return result;
+    }
+
+    /**
+     * Fills the array with the same bytes as {@link Random#nextBytes(byte[])}: consecutive {@code nextInt()}
+     * values, each stored low byte first and the last one cut short, taken 64 bits at a time.
+     */
+    @Override
+    public synchronized void nextBytes(byte[] bytes) {
+        int i = 0;
+        for (int words = bytes.length / 8; words > 0; words--) {
+            long v = nextBits(64);
+            for (int k = 0, first = (int) (v >>> 32); k < 4; k++, first >>>= 8) {
+                bytes[i++] = (byte) first;
+            }
+            for (int k = 0, second = (int) v; k < 4; k++, second >>>= 8) {
+                bytes[i++] = (byte) second;
+            }
+        }
+        while (i < bytes.length) {
+            int v = (int) nextBits(32);
+            for (int k = Math.min(bytes.length - i, 4); k > 0; k--, v >>>= 8) {
+                bytes[i++] = (byte) v;
+            }
+        }
+        flushCounters();
+    }
+
+    /**
+     * Fills the remaining bytes of the buffer with the same sequence {@link #nextBytes(byte[])} would produce.
+     */
+    public synchronized void nextBytes(ByteBuffer buffer) {
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        while (buffer.remaining() >= 8) {
+            // the two ints low byte first are the word with its halves swapped, in little-endian order
+            long v = Long.rotateLeft(nextBits(64), 32);
+            buffer.putLong(bigEndian ? Long.reverseBytes(v) : v);
+        }
+        while (buffer.hasRemaining()) {
+            int v = (int) nextBits(32);
+            for (int k = Math.min(buffer.remaining(), 4); k > 0; k--, v >>>= 8) {
+                buffer.put((byte) v);
+            }
+        }
+        flushCounters();
+    }
+
+    /*
+     * Streams never split the generator itself: the state is not thread-safe, so parallel pipelines
+     * get batches drawn sequentially by the thread that traverses the stream.
+     */
+
+    @Override
+    public IntStream ints() {
+        return ints(Long.MAX_VALUE);
+    }
+
+    @Override
+    public IntStream ints(long streamSize) {
+        checkStreamSize(streamSize);
+        return StreamSupport.intStream(new Spliterators.AbstractIntSpliterator(streamSize, STREAM_CHARACTERISTICS) {
+            private long remaining = streamSize;
+
+            @Override
+            public boolean tryAdvance(IntConsumer action) {
+                if (remaining == 0) {
+                    return false;
+                }
+                remaining--;
+                action.accept(nextInt());
+                return true;
+            }
+        }, false);
+    }
+
+    @Override
+    public LongStream longs() {
+        return longs(Long.MAX_VALUE);
+    }
+
+    @Override
+    public LongStream longs(long streamSize) {
+        checkStreamSize(streamSize);
+        return StreamSupport.longStream(new Spliterators.AbstractLongSpliterator(streamSize, STREAM_CHARACTERISTICS) {
+            private long remaining = streamSize;
+
+            @Override
+            public boolean tryAdvance(LongConsumer action) {
+                if (remaining == 0) {
+                    return false;
+                }
+                remaining--;
+                action.accept(nextLong());
+                return true;
+            }
+        }, false);
+    }
+
+    private static void checkStreamSize(long streamSize) {
+        if (streamSize < 0) {
+            throw new IllegalArgumentException("Size must be non-negative: " + streamSize);
+        }
+    }
+
+    /**
+     * Everything needed to continue the stream later. A reseed published but not yet taken over is applied first,
+     * so the snapshot does not lose it.
+     */
+    synchronized GeneratorSnapshot snapshot() {
+        takeReseed();
+        return new GeneratorSnapshot(modulus, bitsPerStep, isCrt(), this instanceof SplittableBBSRandom,
+                origin, engine.getState(), buffer, buffered, position);
+    }
+
+    BigInteger getN() {
+        return n;
+    }
+
+    synchronized BigInteger getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Makes the next output call restart the stream from {@code seed}, which must be in [2, n).
+     */
+    void reseed(BigInteger seed) {
+        reseed = seed;
+    }
+
+    /**
+     * Restarts the stream from {@code seed} right away, as if the generator had been seeded with it.
+     */
+    synchronized void restart(BigInteger seed) {
+        origin = seed;
+        engine.setState(seed);
+        position = 0;
+        buffered = 0;
+        reseedAt = reseedEveryBits;
+    }
+
+    private void takeReseed() {
+        if (reseed != null) {
+            restart(RESEED.getAndSet(this, null));
+        }
+    }
+
+    boolean isReseedPending() {
+        return reseed != null;
+    }
+
+    /**
+     * Runs {@code action} on the thread that takes the position since the last restart to {@code everyBits}, once
+     * per restart; null removes the action.
+     *
+     * @throws IllegalStateException if another action is set
+     */
+    synchronized void onReseedDue(long everyBits, Runnable action) {
+        if (action != null && reseedDue != null) {
+            throw new IllegalStateException("Generator already has a reseeder");
+        }
+        reseedDue = action;
+        reseedEveryBits = action == null ? Long.MAX_VALUE : everyBits;
+        reseedAt = reseedEveryBits;
+        checkReseedDue();
+    }
+
+    private void checkReseedDue() {
+        if (position >= reseedAt) {
+            reseedAt = Long.MAX_VALUE;
+            reseedDue.run();
+        }
+    }
+
+    /**
+     * Skips {@code bits} output bits, jumping over whole steps with x^(2^k mod lambda(n)).
+     */
+    synchronized void skip(long bits, BlumModulus modulus) {
+        position += bits;
+        checkReseedDue();
+        if (bits < buffered) {
+            buffered -= bits;
+            return;
+        }
+        bits -= buffered;
+        long steps = bits / bitsPerStep + 1;
+        engine.setState(modulus.jump(engine.getState(), steps));
+        buffer = engine.lowBits();
+        buffered = bitsPerStep - (int) (bits % bitsPerStep);
+    }
+
+    /**
+     * Moves to output bit {@code bit} of the stream, counted from seeding.
+     */
+    synchronized void seek(long bit, BlumModulus modulus) {
+        engine.setState(origin);
+        position = 0;
+        buffered = 0;
+        skip(bit, modulus);
+    }
+
+    private void flushCounters() {
+        if (squarings != 0) {
+            SQUARINGS.add(squarings);
+            BITS.add((long) squarings * bitsPerStep);
+            squarings = 0;
+        }
+    }
+
+    /**
+     * Takes the next {@code bits} (at most 64) output bits, the earliest one becoming the highest bit.
+     */
+    private long nextBits(int bits) {
+        takeReseed();
+        position += bits;
+        checkReseedDue();
+        long result = 0;
+        while (bits > 0) {
+            if (buffered == 0) {
+                engine.square();
+                buffer = engine.lowBits();
+                buffered = bitsPerStep;
+                squarings++;
+            }
+            int take = Math.min(bits, buffered);
+            buffered -= take;
+            result = (result << take) | ((buffer >>> buffered) & ((1 << take) - 1));
+            bits -= take;
         }
         return result;
     }
+
+    public static class Builder {
+        private int bits = 512;
+        private BlumModulus modulus;
+        private Random seedSource;
+        private int bitsPerStep = 1;
+        private boolean maxBitsPerStep;
+        private boolean crt;
+
+        private Builder() {
+        }
+
+        public Builder bits(int bits) {
+            this.bits = bits;
+            return this;
+        }
+
+        /**
+         * Uses an existing modulus instead of generating one, for example from a {@link ModulusStore}.
+         */
+        public Builder modulus(BlumModulus modulus) {
+            this.modulus = modulus;
+            this.bits = modulus.bitLength();
+            return this;
+        }
+
+        public Builder seedSource(Random seedSource) {
+            this.seedSource = seedSource;
+            return this;
+        }
+
+        /**
+         * Takes as many bits from every state as is still provably secure for the modulus size.
+         */
+        public Builder maxBitsPerStep() {
+            this.maxBitsPerStep = true;
+            return this;
+        }
+
+        /**
+         * @param bitsPerStep at least 1, the upper bound depends on the modulus size and is checked on build
+         */
+        public Builder bitsPerStep(int bitsPerStep) {
+            if (bitsPerStep < 1) {
+                throw new IllegalArgumentException("Bits per step must be positive: " + bitsPerStep);
+            }
+            this.bitsPerStep = bitsPerStep;
+            this.maxBitsPerStep = false;
+            return this;
+        }
+
+        /**
+         * Keeps the factors of the modulus inside the generator and squares modulo each of them, which is
+         * several times cheaper than squaring modulo n. Only for the owner of the modulus: the factors
+         * stay in memory as long as the generator does.
+         */
+        public Builder crt() {
+            this.crt = true;
+            return this;
+        }
+
+        public BBSRandom build() {
+            checkSeedSource();
+            if (modulus == null && !crt) {
+                return new BBSRandom(bits, seedSource, resolveBitsPerStep());
+            }
+            try {
+                BlumModulus m = modulus != null ? modulus : BlumModulus.generate(bits, seedSource);
+                return new BBSRandom(crt ? m : m.withoutFactors(), seedSource, resolveBitsPerStep(), crt);
+            } finally {
+                closeIfDevice(seedSource);
+            }
+        }
+
+        /**
+         * Generator that keeps the factors of its modulus, see {@link SplittableBBSRandom}.
+         */
+        public SplittableBBSRandom buildSplittable() {
+            checkSeedSource();
+            try {
+                return new SplittableBBSRandom(modulus != null ? modulus : BlumModulus.generate(bits, seedSource),
+                        seedSource, resolveBitsPerStep(), crt);
+            } finally {
+                closeIfDevice(seedSource);
+            }
+        }
+
+        private void checkSeedSource() {
+            if (seedSource == null) {
+                throw new IllegalStateException("Seed source is not set");
+            }
+        }
+
+        private int resolveBitsPerStep() {
+            return maxBitsPerStep ? BBSRandom.maxBitsPerStep(bits) : bitsPerStep;
+        }
+    }
 }
@@ -0,0 +1,43 @@
+package ru.bloof.prng;
+
+import java.security.SecureRandomSpi;
+
+/**
+ * {@code BBS} algorithm of {@link BBSProvider}. Every thread draws from its own generator of the provider's pool,
+ * so concurrent callers never contend: a call only takes the uncontended monitor of the caller's generator.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public final class BBSSecureRandomSpi extends SecureRandomSpi {
+    private static final long serialVersionUID = 1L;
+    private final transient BBSProvider provider;
+
+    BBSSecureRandomSpi(BBSProvider provider) {
+        this.provider = provider;
+    }
+
+    /**
+     * Mixes the seed into the calling thread's generator together with its current seed, so it supplements the
+     * randomness rather than replacing it.
+     */
+    @Override
+    protected void engineSetSeed(byte[] seed) {
+        SplittableBBSRandom generator = provider.getPool().current();
+        generator.reseed(Reseeder.mix(generator.getOrigin(), seed, generator.getN()));
+    }
+
+    @Override
+    protected void engineNextBytes(byte[] bytes) {
+        provider.getPool().nextBytes(bytes);
+    }
+
+    /**
+     * Bytes straight from the provider's seed source, which may wait for events when it has none ready.
+     */
+    @Override
+    protected byte[] engineGenerateSeed(int numBytes) {
+        byte[] seed = new byte[numBytes];
+        provider.getSeedSource().nextBytes(seed);
+        return seed;
+    }
+}
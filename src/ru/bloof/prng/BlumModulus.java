@@ -0,0 +1,92 @@
+package ru.bloof.prng;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * Blum integer n = p * q with p = q = 3 (mod 4). The factors are optional and only kept by their owner,
+ * anyone who knows them can predict the generator in both directions.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public final class BlumModulus {
+    private static final BigInteger BIG_THREE = BigInteger.valueOf(3);
+    private static final BigInteger BIG_FOUR = BigInteger.valueOf(4);
+    private static final BigInteger BIG_TWO = BigInteger.valueOf(2);
+    private final BigInteger n;
+    private final BigInteger p, q;
+    private final BigInteger lambda;
+
+    public BlumModulus(BigInteger n) {
+        this.n = n;
+        p = q = lambda = null;
+    }
+
+    public BlumModulus(BigInteger p, BigInteger q) {
+        if (!p.mod(BIG_FOUR).equals(BIG_THREE) || !q.mod(BIG_FOUR).equals(BIG_THREE) || p.equals(q)) {
+            throw new IllegalArgumentException("Factors must be distinct primes congruent to 3 mod 4");
+        }
+        this.p = p;
+        this.q = q;
+        n = p.multiply(q);
+        BigInteger p1 = p.subtract(BigInteger.ONE), q1 = q.subtract(BigInteger.ONE);
+        lambda = p1.divide(p1.gcd(q1)).multiply(q1);
+    }
+
+    public static BlumModulus generate(int bits, Random rand) {
+        return ModulusGenerator.getDefault().generate(bits, rand);
+    }
+
+    public BigInteger getN() {
+        return n;
+    }
+
+    public int bitLength() {
+        return n.bitLength();
+    }
+
+    public boolean hasFactors() {
+        return p != null;
+    }
+
+    public BigInteger getP() {
+        checkFactors();
+        return p;
+    }
+
+    public BigInteger getQ() {
+        checkFactors();
+        return q;
+    }
+
+    /**
+     * Carmichael function lambda(n) = lcm(p - 1, q - 1).
+     */
+    public BigInteger getLambda() {
+        checkFactors();
+        return lambda;
+    }
+
+    public BlumModulus withoutFactors() {
+        return hasFactors() ? new BlumModulus(n) : this;
+    }
+
+    /**
+     * x^(2^steps) mod n computed as x^(2^steps mod lambda(n)) in O(log steps + log n) multiplications,
+     * done modulo p and q separately with the exponent reduced modulo p - 1 and q - 1.
+     */
+    public BigInteger jump(BigInteger x, long steps) {
+        checkFactors();
+        BigInteger k = BigInteger.valueOf(steps);
+        BigInteger x_p = x.mod(p).modPow(BIG_TWO.modPow(k, p.subtract(BigInteger.ONE)), p);
+        BigInteger x_q = x.mod(q).modPow(BIG_TWO.modPow(k, q.subtract(BigInteger.ONE)), q);
+        BigInteger h = x_p.subtract(x_q).multiply(q.modInverse(p)).mod(p);
+        return x_q.add(q.multiply(h));
+    }
+
+    private void checkFactors() {
+        if (p == null) {
+            throw new IllegalStateException("Factors of the modulus are not known");
+        }
+    }
+}
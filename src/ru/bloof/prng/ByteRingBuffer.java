@@ -0,0 +1,88 @@
+package ru.bloof.prng;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free bounded byte queue for one producer thread and any number of consumers.
+ * <p>
+ * Consumers copy the bytes first and claim them by moving the head afterwards: the producer never
+ * writes past the head it has seen, so the copy is valid whenever the claim succeeds.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+final class ByteRingBuffer {
+    private final byte[] data;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    ByteRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        data = new byte[size];
+        mask = size - 1;
+    }
+
+    int capacity() {
+        return data.length;
+    }
+
+    int available() {
+        return (int) (tail.get() - head.get());
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Producer side: stores as many bytes as fit, the rest is counted as dropped.
+     *
+     * @return number of bytes stored
+     */
+    int offer(byte[] src, int offset, int length) {
+        long t = tail.get();
+        int count = (int) Math.min(length, data.length - (t - head.get()));
+        copy(src, offset, data, (int) (t & mask), count, true);
+        tail.lazySet(t + count);
+        if (count < length) {
+            dropped.lazySet(dropped.get() + length - count);
+        }
+        return count;
+    }
+
+    /**
+     * Consumer side: moves up to {@code length} bytes into {@code dst} without blocking.
+     *
+     * @return number of bytes moved
+     */
+    int drainTo(byte[] dst, int offset, int length) {
+        while (true) {
+            long h = head.get();
+            int count = (int) Math.min(length, tail.get() - h);
+            if (count <= 0) {
+                return 0;
+            }
+            copy(data, (int) (h & mask), dst, offset, count, false);
+            if (head.compareAndSet(h, h + count)) {
+                return count;
+            }
+        }
+    }
+
+    private void copy(byte[] src, int srcPos, byte[] dst, int dstPos, int count, boolean intoRing) {
+        int ringPos = intoRing ? dstPos : srcPos;
+        int first = Math.min(count, data.length - ringPos);
+        System.arraycopy(src, srcPos, dst, dstPos, first);
+        if (first < count) {
+            if (intoRing) {
+                System.arraycopy(src, srcPos + first, dst, 0, count - first);
+            } else {
+                System.arraycopy(src, 0, dst, dstPos + first, count - first);
+            }
+        }
+    }
+}
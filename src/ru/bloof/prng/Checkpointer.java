@@ -0,0 +1,102 @@
+package ru.bloof.prng;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Saves snapshots of a generator to a file periodically from a background thread, so a restarted process can
+ * {@link GeneratorSnapshot#load(Path) load} the last one and continue instead of reseeding.
+ * <p>
+ * A restored generator repeats whatever was output after the snapshot it starts from. Generators that know the
+ * factors of their modulus avoid that with a reserve: every snapshot is taken that many bits ahead of the
+ * generator, which stays safe as long as the generator outputs fewer bits than the reserve per period.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class Checkpointer {
+    private final Path file;
+    private final Supplier<GeneratorSnapshot> snapshots;
+    private final ScheduledExecutorService executor;
+    private long checkpoints;
+    private IOException lastFailure;
+
+    /**
+     * @param snapshots called from the background thread, must take the snapshot safely
+     */
+    public Checkpointer(Path file, Supplier<GeneratorSnapshot> snapshots, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        this.file = file;
+        this.snapshots = snapshots;
+        executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "bbs-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::tryCheckpoint, period, period, unit);
+    }
+
+    /**
+     * Checkpoints a generator, the snapshots being taken under the monitor its output methods hold.
+     *
+     * @param reserveBits how far ahead of the generator the snapshots are taken, 0 to take them where it is
+     */
+    public static Checkpointer of(BBSRandom generator, long reserveBits, Path file, long period, TimeUnit unit) {
+        if (reserveBits < 0) {
+            throw new IllegalArgumentException("Reserve must be non-negative: " + reserveBits);
+        }
+        if (reserveBits > 0 && !(generator instanceof SplittableBBSRandom) && !generator.isCrt()) {
+            throw new IllegalArgumentException("Reserve needs a generator that keeps the factors of its modulus");
+        }
+        return new Checkpointer(file, () -> {
+            GeneratorSnapshot snapshot = generator.snapshot();
+            return reserveBits > 0 ? snapshot.ahead(reserveBits) : snapshot;
+        }, period, unit);
+    }
+
+    /**
+     * Saves a snapshot right away.
+     */
+    public synchronized void checkpoint() throws IOException {
+        snapshots.get().save(file);
+        checkpoints++;
+        lastFailure = null;
+    }
+
+    public synchronized long getCheckpoints() {
+        return checkpoints;
+    }
+
+    /**
+     * Why the last background checkpoint failed, null if it succeeded. Failed checkpoints are retried next period.
+     */
+    public synchronized IOException getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Stops the background thread and saves a final snapshot.
+     */
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkpoint();
+    }
+
+    private synchronized void tryCheckpoint() {
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            lastFailure = e;
+        }
+    }
+}
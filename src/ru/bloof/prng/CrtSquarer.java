@@ -0,0 +1,100 @@
+package ru.bloof.prng;
+
+import java.math.BigInteger;
+
+/**
+ * Squaring modulo n = p * q done separately modulo p and modulo q on half-width numbers.
+ * <p>
+ * The state x is only kept as x mod p and x mod q, the low bits of x are recovered when they are asked for
+ * with Garner's formula x = x_q + q * ((x_p - x_q) * q^-1 mod p), p being the larger factor so that x_q
+ * is already reduced modulo p. Only the lowest digit of q * h is needed for the output, which leaves one
+ * half-width multiplication on top of the two half-width squarings. Not thread-safe.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+final class CrtSquarer implements SquaringEngine {
+    private static final long MASK = 0xFFFFFFFFL;
+    private final BigInteger p, q, qInverse;
+    private final MontgomerySquarer modP, modQ;
+    private final long[] pDigits;
+    // q^-1 * R mod p, so a Montgomery multiplication by it multiplies by q^-1
+    private final long[] qInverseMontgomery;
+    private final long q0;
+    private final long[] xp, xq;
+
+    CrtSquarer(BlumModulus modulus) {
+        boolean pLarger = modulus.getP().compareTo(modulus.getQ()) > 0;
+        p = pLarger ? modulus.getP() : modulus.getQ();
+        q = pLarger ? modulus.getQ() : modulus.getP();
+        qInverse = q.modInverse(p);
+        modP = new MontgomerySquarer(p);
+        modQ = new MontgomerySquarer(q);
+        int size = modP.size();
+        pDigits = MontgomerySquarer.toLimbs(p, size);
+        qInverseMontgomery = MontgomerySquarer.toLimbs(qInverse.shiftLeft(32 * size).mod(p), size);
+        q0 = q.longValue() & MASK;
+        xp = new long[size];
+        // the q part is padded to the size of the p part for the subtraction
+        xq = new long[size];
+    }
+
+    private CrtSquarer(CrtSquarer other) {
+        p = other.p;
+        q = other.q;
+        qInverse = other.qInverse;
+        modP = new MontgomerySquarer(other.modP);
+        modQ = new MontgomerySquarer(other.modQ);
+        pDigits = other.pDigits;
+        qInverseMontgomery = other.qInverseMontgomery;
+        q0 = other.q0;
+        xp = new long[other.xp.length];
+        xq = new long[other.xq.length];
+    }
+
+    @Override
+    public SquaringEngine copy() {
+        return new CrtSquarer(this);
+    }
+
+    @Override
+    public void square() {
+        modP.square();
+        modQ.square();
+    }
+
+    @Override
+    public int lowBits() {
+        modP.getState(xp);
+        modQ.getState(xq);
+        // xp = x_p - x_q mod p
+        long borrow = 0;
+        for (int i = 0; i < xp.length; i++) {
+            long v = xp[i] - xq[i] - borrow;
+            xp[i] = v & MASK;
+            borrow = v < 0 ? 1 : 0;
+        }
+        if (borrow != 0) {
+            long c = 0;
+            for (int i = 0; i < xp.length; i++) {
+                long v = xp[i] + pDigits[i] + c;
+                xp[i] = v & MASK;
+                c = v >>> 32;
+            }
+        }
+        modP.multiply(xp, qInverseMontgomery, xp);
+        return (int) (xq[0] + q0 * xp[0]);
+    }
+
+    @Override
+    public BigInteger getState() {
+        BigInteger x_p = modP.getState(), x_q = modQ.getState();
+        BigInteger h = x_p.subtract(x_q).multiply(qInverse).mod(p);
+        return x_q.add(q.multiply(h));
+    }
+
+    @Override
+    public void setState(BigInteger x) {
+        modP.setState(x.mod(p));
+        modQ.setState(x.mod(q));
+    }
+}
@@ -1,36 +1,181 @@
 package ru.bloof.prng;
 
-import ru.bloof.device.BaseDeviceListener;
 import ru.bloof.device.DeviceEvent;
+import ru.bloof.device.DeviceEventBatch;
+import ru.bloof.device.DeviceEventListener;
+import ru.bloof.device.EntropySource;
+import ru.bloof.device.EvdevSource;
+import ru.bloof.metrics.Counter;
+import ru.bloof.metrics.Metrics;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * Random bytes conditioned from the events of one or more {@link EntropySource}s, by default all readable
+ * input devices.
+ *
  * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
  */
 public class DeviceRandom extends Random {
-    private final ArrayBlockingQueue<Byte> bytes = new ArrayBlockingQueue<>(1000);
-    private final BaseDeviceListener listener = new BaseDeviceListener() {
-        @Override
-        public void onEvent(DeviceEvent event) {
-            bytes.offer((byte) (event.getValue() & 0xFF));
-            bytes.offer((byte) ((event.getValue() >> 8) & 0xFF));
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final Counter QUEUED = Metrics.counter("device.bytes.queued");
+    private static final Counter DROPPED = Metrics.counter("device.bytes.dropped");
+    private final int capacity;
+    /**
+     * One conditioner and ring per reader thread, each of them being the only producer of its ring. A producer is
+     * removed once its thread has stopped and its ring is drained, its totals going to the retired counters.
+     */
+    private final List<Producer> producers = new CopyOnWriteArrayList<>();
+    private final LongAdder retiredDropped = new LongAdder();
+    private final LongAdder retiredEvents = new LongAdder();
+    private final LongAdder retiredCredited = new LongAdder();
+    private final ThreadLocal<Producer> producer = new ThreadLocal<>();
+    private final LongAdder consumed = new LongAdder();
+    private final Object lock = new Object();
+    private volatile int waiting;
+    private final List<EntropySource> sources;
+
+    public DeviceRandom() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of bytes buffered per reader thread
+     */
+    public DeviceRandom(int capacity) {
+        this(capacity, new EvdevSource());
+    }
+
+    public DeviceRandom(EntropySource... sources) {
+        this(DEFAULT_CAPACITY, sources);
+    }
+
+    public DeviceRandom(int capacity, EntropySource... sources) {
+        this.capacity = capacity;
+        this.sources = new ArrayList<>(Arrays.asList(sources));
+        try {
+            for (EntropySource source : this.sources) {
+                source.start(new SourceListener(source.getMaxCreditPerEvent()));
+            }
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Producer of the calling reader thread, which only ever reads one source.
+     */
+    private Producer producer(int maxCreditPerEvent) {
+        Producer p = producer.get();
+        if (p == null) {
+            p = new Producer(new ByteRingBuffer(capacity), maxCreditPerEvent);
+            producers.add(p);
+            producer.set(p);
+        }
+        return p;
+    }
+
+    /**
+     * Removes a producer whose thread has stopped and whose ring is empty, which it then stays.
+     */
+    private void retire(Producer p) {
+        if (p.retired.compareAndSet(false, true)) {
+            retiredDropped.add(p.ring.getDropped());
+            retiredEvents.add(p.conditioner.getEvents());
+            retiredCredited.add(p.conditioner.getCreditedBits());
+            producers.remove(p);
         }
-    };
+    }
+
+    public long getConsumedBytes() {
+        return consumed.sum();
+    }
+
+    /**
+     * Bytes lost because the reader of their device found its buffer full.
+     */
+    public long getDroppedBytes() {
+        long sum = retiredDropped.sum();
+        for (Producer p : producers) {
+            sum += p.ring.getDropped();
+        }
+        return sum;
+    }
+
+    public int getAvailableBytes() {
+        int sum = 0;
+        for (Producer p : producers) {
+            sum += p.ring.available();
+        }
+        return sum;
+    }
+
+    public long getEventsSeen() {
+        long sum = retiredEvents.sum();
+        for (Producer p : producers) {
+            sum += p.conditioner.getEvents();
+        }
+        return sum;
+    }
 
-    private byte getByte() throws InterruptedException {
-        return bytes.take();
+    /**
+     * Entropy estimate of all events seen so far, in bits.
+     */
+    public long getEntropyEstimate() {
+        long sum = retiredCredited.sum();
+        for (Producer p : producers) {
+            sum += p.conditioner.getCreditedBits();
+        }
+        return sum;
     }
 
     @Override
     public void nextBytes(byte[] bytes) {
-        for (int i = 0; i < bytes.length; i++) {
+        int offset = 0;
+        int start = 0;
+        while (offset < bytes.length) {
+            int read = 0;
+            List<Producer> snapshot = producers;
+            for (int i = 0; i < snapshot.size() && offset < bytes.length; i++) {
+                Producer p = snapshot.get((start + i) % snapshot.size());
+                int n = p.ring.drainTo(bytes, offset, bytes.length - offset);
+                offset += n;
+                read += n;
+                if (p.stopped && p.ring.available() == 0) {
+                    retire(p);
+                }
+            }
+            start++;
+            consumed.add(read);
+            if (read == 0 && !awaitBytes()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return false if interrupted
+     */
+    private boolean awaitBytes() {
+        synchronized (lock) {
+            waiting++;
             try {
-                bytes[i] = getByte();
+                if (getAvailableBytes() == 0) {
+                    lock.wait(100);
+                }
+                return true;
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
-                return;
+                return false;
+            } finally {
+                waiting--;
             }
         }
     }
@@ -48,6 +193,76 @@ public class DeviceRandom extends Random {
     }
 
     public void close() {
-        listener.close();
+        for (EntropySource source : sources) {
+            source.close();
+        }
+    }
+
+    private final class SourceListener implements DeviceEventListener {
+        private final int maxCreditPerEvent;
+
+        SourceListener(int maxCreditPerEvent) {
+            this.maxCreditPerEvent = maxCreditPerEvent;
+        }
+
+        @Override
+        public void onEvent(DeviceEvent event) {
+            producer(maxCreditPerEvent).add(event.getTimeSec(), event.getTimeUsec(), event.getType(),
+                    event.getCode(), event.getValue());
+        }
+
+        @Override
+        public void onEvents(DeviceEventBatch batch) {
+            Producer p = producer(maxCreditPerEvent);
+            for (int i = 0; i < batch.size(); i++) {
+                p.add(batch.getTimeSec(i), batch.getTimeUsec(i), batch.getType(i), batch.getCode(i),
+                        batch.getValue(i));
+            }
+        }
+
+        @Override
+        public void onStopped() {
+            Producer p = producer.get();
+            if (p != null) {
+                producer.remove();
+                p.stopped = true;
+                if (p.ring.available() == 0) {
+                    retire(p);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reader thread side: conditions the events of one source and publishes every full-entropy block.
+     */
+    private final class Producer {
+        private final ByteRingBuffer ring;
+        private final EntropyConditioner conditioner;
+        private final byte[] block = new byte[EntropyConditioner.OUTPUT_BYTES];
+        private final AtomicBoolean retired = new AtomicBoolean();
+        private volatile boolean stopped;
+
+        Producer(ByteRingBuffer ring, int maxCreditPerEvent) {
+            this.ring = ring;
+            conditioner = new EntropyConditioner(maxCreditPerEvent);
+        }
+
+        void add(long timeSec, long timeUsec, short type, short code, int value) {
+            if (!conditioner.add(timeSec, timeUsec, type, code, value)) {
+                return;
+            }
+            conditioner.output(block, 0);
+            int stored = ring.offer(block, 0, block.length);
+            QUEUED.add(stored);
+            if (stored < block.length) {
+                DROPPED.add(block.length - stored);
+            }
+            if (waiting > 0) {
+                synchronized (lock) {
+                    lock.notifyAll();
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,91 @@
+package ru.bloof.prng;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Compresses input events of one source into full-entropy bytes.
+ * <p>
+ * Every event, with its timestamps, type, code, value and the arrival time, goes into a running SHA-256.
+ * Only the timing is credited: like the Linux input pool, an event is worth the bit length of the
+ * smallest of the first, second and third differences of its timestamp, halved and capped at the source's
+ * {@link ru.bloof.device.EntropySource#getMaxCreditPerEvent() credit}, 11 bits for real devices.
+ * A digest is released once the credit covers its 256 bits plus a safety margin.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+final class EntropyConditioner {
+    static final int OUTPUT_BYTES = 32;
+    private static final int REQUIRED_CREDIT = OUTPUT_BYTES * 8 + 64;
+    private final int maxCreditPerEvent;
+    private final MessageDigest digest;
+    private final byte[] record = new byte[32];
+    private long lastTime, lastDelta, lastDelta2;
+    private int credit;
+    private long events, creditedBits;
+
+    EntropyConditioner(int maxCreditPerEvent) {
+        this.maxCreditPerEvent = maxCreditPerEvent;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return true when a full-entropy block can be taken with {@link #output(byte[], int)}
+     */
+    boolean add(long timeSec, long timeUsec, short type, short code, int value) {
+        putLong(0, timeSec);
+        putLong(8, timeUsec);
+        putLong(16, System.nanoTime());
+        record[24] = (byte) (type >>> 8);
+        record[25] = (byte) type;
+        record[26] = (byte) (code >>> 8);
+        record[27] = (byte) code;
+        record[28] = (byte) (value >>> 24);
+        record[29] = (byte) (value >>> 16);
+        record[30] = (byte) (value >>> 8);
+        record[31] = (byte) value;
+        digest.update(record, 0, record.length);
+
+        long time = timeSec * 1_000_000 + timeUsec;
+        long delta = time - lastTime;
+        long delta2 = delta - lastDelta;
+        long delta3 = delta2 - lastDelta2;
+        lastTime = time;
+        lastDelta = delta;
+        lastDelta2 = delta2;
+        long min = Math.min(Math.abs(delta), Math.min(Math.abs(delta2), Math.abs(delta3)));
+        int bits = Math.min(maxCreditPerEvent, 64 - Long.numberOfLeadingZeros(min >>> 1));
+        events++;
+        credit += bits;
+        creditedBits += bits;
+        return credit >= REQUIRED_CREDIT;
+    }
+
+    /**
+     * Writes {@link #OUTPUT_BYTES} bytes and starts collecting the next block.
+     */
+    void output(byte[] dst, int offset) {
+        byte[] hash = digest.digest();
+        System.arraycopy(hash, 0, dst, offset, OUTPUT_BYTES);
+        credit = 0;
+    }
+
+    long getEvents() {
+        return events;
+    }
+
+    long getCreditedBits() {
+        return creditedBits;
+    }
+
+    private void putLong(int offset, long v) {
+        for (int i = 7; i >= 0; i--) {
+            record[offset + i] = (byte) v;
+            v >>>= 8;
+        }
+    }
+}
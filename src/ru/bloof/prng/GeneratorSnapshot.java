@@ -0,0 +1,207 @@
+package ru.bloof.prng;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.zip.CRC32;
+
+/**
+ * Complete state of a {@link BBSRandom}: modulus, seed, current state, unread output bits, extraction mode and
+ * output position. A restored generator continues the stream from the very next bit, without replaying it.
+ * <p>
+ * Like the modulus factors, the state predicts all further output, snapshot files are readable by the owner only
+ * where the file system allows that.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public final class GeneratorSnapshot {
+    private static final int MAGIC = 0x42425332;
+    private static final int CRT = 1, SPLITTABLE = 2, FACTORS = 4;
+    private final BlumModulus modulus;
+    private final int bitsPerStep;
+    private final boolean crt, splittable;
+    private final BigInteger origin, state;
+    private final int buffer, buffered;
+    private final long position;
+
+    GeneratorSnapshot(BlumModulus modulus, int bitsPerStep, boolean crt, boolean splittable, BigInteger origin,
+                      BigInteger state, int buffer, int buffered, long position) {
+        this.modulus = modulus;
+        this.bitsPerStep = bitsPerStep;
+        this.crt = crt;
+        this.splittable = splittable;
+        this.origin = origin;
+        this.state = state;
+        this.buffer = buffer;
+        this.buffered = buffered;
+        this.position = position;
+    }
+
+    /**
+     * Snapshot of the generator, taken under its monitor so it is consistent even while another thread uses it.
+     */
+    public static GeneratorSnapshot of(BBSRandom generator) {
+        return generator.snapshot();
+    }
+
+    /**
+     * New generator continuing the stream, a {@link SplittableBBSRandom} if the snapshot was taken of one.
+     */
+    public BBSRandom restore() {
+        return splittable ? new SplittableBBSRandom(this) : new BBSRandom(this);
+    }
+
+    /**
+     * Snapshot of the same stream {@code bits} output bits further, jumping there with the factors of the modulus.
+     */
+    public GeneratorSnapshot ahead(long bits) {
+        if (!modulus.hasFactors()) {
+            throw new IllegalStateException("Jumping ahead needs the factors of the modulus");
+        }
+        if (bits < 0) {
+            throw new IllegalArgumentException("Jump distance must be non-negative: " + bits);
+        }
+        BBSRandom generator = restore();
+        generator.skip(bits, modulus);
+        return generator.snapshot();
+    }
+
+    public BlumModulus getModulus() {
+        return modulus;
+    }
+
+    public int getBitsPerStep() {
+        return bitsPerStep;
+    }
+
+    public boolean isCrt() {
+        return crt;
+    }
+
+    public boolean isSplittable() {
+        return splittable;
+    }
+
+    /**
+     * Output position of the generator, see {@link BBSRandom#getPosition()}.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    BigInteger getOrigin() {
+        return origin;
+    }
+
+    BigInteger getState() {
+        return state;
+    }
+
+    int getBuffer() {
+        return buffer;
+    }
+
+    int getBuffered() {
+        return buffered;
+    }
+
+    /**
+     * Replaces the file atomically and durably, see {@link AtomicFiles#replace}.
+     */
+    public void save(Path file) throws IOException {
+        AtomicFiles.replace(file, toBytes());
+    }
+
+    public static GeneratorSnapshot load(Path file) throws IOException {
+        try {
+            return fromBytes(ByteBuffer.wrap(Files.readAllBytes(file)));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Not a generator snapshot: " + file, e);
+        }
+    }
+
+    /**
+     * Magic, mode flags, bits per step, unread bits, position, the modulus or its factors, seed and state,
+     * then a CRC32 of all of that.
+     */
+    public ByteBuffer toBytes() {
+        BigInteger[] numbers = modulus.hasFactors()
+                ? new BigInteger[]{modulus.getP(), modulus.getQ(), origin, state}
+                : new BigInteger[]{modulus.getN(), origin, state};
+        byte[][] encoded = new byte[numbers.length][];
+        int size = 4 + 3 + 4 + 8 + 4;
+        for (int i = 0; i < numbers.length; i++) {
+            encoded[i] = numbers[i].toByteArray();
+            size += 4 + encoded[i].length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC);
+        out.put((byte) ((crt ? CRT : 0) | (splittable ? SPLITTABLE : 0) | (modulus.hasFactors() ? FACTORS : 0)));
+        out.put((byte) bitsPerStep);
+        out.put((byte) buffered);
+        out.putInt(buffer);
+        out.putLong(position);
+        for (byte[] number : encoded) {
+            out.putInt(number.length);
+            out.put(number);
+        }
+        ByteBuffer content = out.duplicate();
+        content.flip();
+        out.putInt(crc(content));
+        out.flip();
+        return out;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a valid snapshot
+     */
+    public static GeneratorSnapshot fromBytes(ByteBuffer in) {
+        ByteBuffer bytes = in.slice();
+        int size = bytes.remaining();
+        if (size < 4 + 3 + 4 + 8 + 4 || bytes.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Bad magic");
+        }
+        ByteBuffer content = bytes.duplicate();
+        content.position(0);
+        content.limit(size - 4);
+        if (bytes.getInt(size - 4) != crc(content)) {
+            throw new IllegalArgumentException("Checksum mismatch");
+        }
+        int flags = bytes.get();
+        int bitsPerStep = bytes.get();
+        int buffered = bytes.get();
+        int buffer = bytes.getInt();
+        long position = bytes.getLong();
+        BlumModulus modulus = (flags & FACTORS) != 0
+                ? new BlumModulus(readNumber(bytes), readNumber(bytes))
+                : new BlumModulus(readNumber(bytes));
+        BigInteger origin = readNumber(bytes), state = readNumber(bytes);
+        if ((flags & (CRT | SPLITTABLE)) != 0 && !modulus.hasFactors()) {
+            throw new IllegalArgumentException("Mode needs the factors of the modulus");
+        }
+        if (buffered < 0 || buffered > bitsPerStep || position < 0
+                || state.signum() <= 0 || state.compareTo(modulus.getN()) >= 0) {
+            throw new IllegalArgumentException("Inconsistent state");
+        }
+        in.position(in.position() + size);
+        return new GeneratorSnapshot(modulus, bitsPerStep, (flags & CRT) != 0, (flags & SPLITTABLE) != 0,
+                origin, state, buffer, buffered, position);
+    }
+
+    private static BigInteger readNumber(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 1 || length > in.remaining() - 4) {
+            throw new IllegalArgumentException("Bad number length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new BigInteger(1, bytes);
+    }
+
+    private static int crc(ByteBuffer bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,128 @@
+package ru.bloof.prng;
+
+import ru.bloof.metrics.Events;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Generates Blum moduli. Primes are searched incrementally from a random start among numbers that are
+ * already 3 mod 4, a window of candidates is sieved by small primes before any Miller-Rabin test, and
+ * p and q are looked for at the same time, each of them testing its window in parallel.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class ModulusGenerator {
+    private static final ModulusGenerator DEFAULT = new ModulusGenerator(ForkJoinPool.commonPool());
+    private static final int PRIME_CERTAINTY = 64;
+    private static final int[] SMALL_PRIMES = IntStream.rangeClosed(3, 2048)
+            .filter(i -> BigInteger.valueOf(i).isProbablePrime(PRIME_CERTAINTY))
+            .toArray();
+    private static final int[] INVERSES_OF_FOUR = IntStream.of(SMALL_PRIMES)
+            .map(p -> BigInteger.valueOf(4).modInverse(BigInteger.valueOf(p)).intValue())
+            .toArray();
+    private static final int MIN_SIEVED_BITS = 16;
+    private final ForkJoinPool pool;
+
+    public ModulusGenerator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public static ModulusGenerator getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Modulus of exactly {@code bits} bits. Only the starting points of the searches are taken from
+     * {@code rand}, and always from the calling thread, so it does not have to be thread-safe.
+     */
+    public BlumModulus generate(int bits, Random rand) {
+        long start = System.nanoTime();
+        int primeBits = bits / 2;
+        BigInteger pStart = randomStart(primeBits, rand);
+        BigInteger qStart = randomStart(bits - primeBits, rand);
+        CompletableFuture<BigInteger> p = CompletableFuture.supplyAsync(() -> search(pStart, primeBits), pool);
+        BigInteger q = pool.submit(() -> search(qStart, bits - primeBits)).join();
+        int rebuilds = 0;
+        while (p.join().equals(q)) {
+            rebuilds++;
+            BigInteger qRestart = randomStart(bits - primeBits, rand);
+            q = pool.submit(() -> search(qRestart, bits - primeBits)).join();
+        }
+        Events.modulusGenerated(bits, rebuilds, start);
+        return new BlumModulus(p.join(), q);
+    }
+
+    /**
+     * Single Blum prime of {@code bits} bits found in the calling thread.
+     */
+    public static BigInteger blumPrime(int bits, Random rand) {
+        return DEFAULT.search(randomStart(bits, rand), bits);
+    }
+
+    /**
+     * Random odd number with the two highest bits set, so the product of two of them has exactly
+     * the sum of their lengths, and the two lowest bits set, so it is 3 mod 4.
+     */
+    private static BigInteger randomStart(int bits, Random rand) {
+        if (bits < 3) {
+            throw new IllegalArgumentException("Prime must have at least 3 bits: " + bits);
+        }
+        return new BigInteger(bits, rand).setBit(bits - 1).setBit(bits - 2).setBit(1).setBit(0);
+    }
+
+    private BigInteger search(BigInteger start, int bits) {
+        BigInteger candidate = start;
+        int window = Math.max(64, 16 * bits);
+        while (true) {
+            if (bits < MIN_SIEVED_BITS) {
+                // small numbers may coincide with the sieving primes, just walk through them
+                for (int k = 0; k < window && candidate.bitLength() == bits; k++) {
+                    if (candidate.isProbablePrime(PRIME_CERTAINTY)) {
+                        return candidate;
+                    }
+                    candidate = candidate.add(BigInteger.valueOf(4));
+                }
+            } else {
+                BigInteger base = candidate;
+                boolean[] composite = sieve(base, window);
+                int found = IntStream.range(0, window)
+                        .filter(k -> !composite[k])
+                        .parallel()
+                        .filter(k -> {
+                            BigInteger c = base.add(BigInteger.valueOf(4L * k));
+                            return c.bitLength() == bits && c.isProbablePrime(PRIME_CERTAINTY);
+                        })
+                        .findFirst()
+                        .orElse(-1);
+                if (found >= 0) {
+                    return base.add(BigInteger.valueOf(4L * found));
+                }
+                candidate = base.add(BigInteger.valueOf(4L * window));
+            }
+            if (candidate.bitLength() != bits) {
+                candidate = BigInteger.ONE.shiftLeft(bits - 1).setBit(bits - 2).setBit(1).setBit(0);
+            }
+        }
+    }
+
+    /**
+     * Marks k for which base + 4k is divisible by one of the small primes.
+     */
+    private static boolean[] sieve(BigInteger base, int window) {
+        boolean[] composite = new boolean[window];
+        for (int i = 0; i < SMALL_PRIMES.length; i++) {
+            int p = SMALL_PRIMES[i];
+            int r = base.mod(BigInteger.valueOf(p)).intValue();
+            // base + 4k = 0 (mod p) <=> k = -r / 4 (mod p)
+            int k = (int) ((long) (p - r) % p * INVERSES_OF_FOUR[i] % p);
+            for (; k < window; k += p) {
+                composite[k] = true;
+            }
+        }
+        return composite;
+    }
+}
@@ -0,0 +1,96 @@
+package ru.bloof.prng;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Local file with generated Blum moduli and their factors, so a restarted process can reuse a modulus
+ * instead of searching for new primes. The factors make the generators predictable to anyone who can read
+ * the file, it is created readable by the owner only where the file system allows that.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class ModulusStore {
+    private static final int MAGIC = 0x42425331;
+    private final Path file;
+    private final ModulusGenerator generator;
+    private final List<BlumModulus> moduli = new ArrayList<>();
+
+    public ModulusStore(Path file) throws IOException {
+        this(file, ModulusGenerator.getDefault());
+    }
+
+    public ModulusStore(Path file, ModulusGenerator generator) throws IOException {
+        this.file = file;
+        this.generator = generator;
+        if (Files.exists(file)) {
+            load();
+        }
+    }
+
+    public synchronized List<BlumModulus> getModuli() {
+        return Collections.unmodifiableList(new ArrayList<>(moduli));
+    }
+
+    /**
+     * Stored modulus of the given size, a new one is generated and saved when there is none.
+     */
+    public synchronized BlumModulus getOrGenerate(int bits, Random rand) throws IOException {
+        for (BlumModulus modulus : moduli) {
+            if (modulus.bitLength() == bits) {
+                return modulus;
+            }
+        }
+        BlumModulus modulus = generator.generate(bits, rand);
+        moduli.add(modulus);
+        save();
+        return modulus;
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a modulus store: " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                moduli.add(new BlumModulus(readNumber(in), readNumber(in)));
+            }
+        }
+    }
+
+    /**
+     * Writes the whole store and replaces the file with it, see {@link AtomicFiles#replace}.
+     */
+    private void save() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(moduli.size());
+            for (BlumModulus modulus : moduli) {
+                writeNumber(out, modulus.getP());
+                writeNumber(out, modulus.getQ());
+            }
+        }
+        AtomicFiles.replace(file, ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    private static BigInteger readNumber(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new BigInteger(1, bytes);
+    }
+
+    private static void writeNumber(DataOutputStream out, BigInteger x) throws IOException {
+        byte[] bytes = x.toByteArray();
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
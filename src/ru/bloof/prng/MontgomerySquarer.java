@@ -0,0 +1,221 @@
+package ru.bloof.prng;
+
+import java.math.BigInteger;
+
+/**
+ * Repeated modular squaring of a single value kept in Montgomery form.
+ * <p>
+ * The modulus and the state are stored as little-endian 32-bit digits in preallocated {@code long[]} limbs,
+ * so {@link #square()} and {@link #lowBits()} do not allocate. Not thread-safe.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+final class MontgomerySquarer implements SquaringEngine {
+    private static final long MASK = 0xFFFFFFFFL;
+    private final BigInteger modulus;
+    private final int size;
+    private final long[] n;
+    private final long nInv;
+    private final long[] state;
+    private final long[] product;
+
+    MontgomerySquarer(BigInteger modulus) {
+        if (modulus.signum() <= 0 || !modulus.testBit(0)) {
+            throw new IllegalArgumentException("Modulus must be positive and odd");
+        }
+        this.modulus = modulus;
+        size = (modulus.bitLength() + 31) / 32;
+        n = toLimbs(modulus, size);
+        nInv = negativeInverse(n[0]);
+        state = new long[size];
+        product = new long[2 * size + 1];
+    }
+
+    MontgomerySquarer(MontgomerySquarer other) {
+        modulus = other.modulus;
+        size = other.size;
+        n = other.n;
+        nInv = other.nInv;
+        state = other.state.clone();
+        product = new long[other.product.length];
+    }
+
+    BigInteger getModulus() {
+        return modulus;
+    }
+
+    /**
+     * Number of 32-bit digits of the modulus.
+     */
+    int size() {
+        return size;
+    }
+
+    @Override
+    public SquaringEngine copy() {
+        return new MontgomerySquarer(this);
+    }
+
+    @Override
+    public void setState(BigInteger x) {
+        BigInteger montgomery = x.mod(modulus).shiftLeft(32 * size).mod(modulus);
+        System.arraycopy(toLimbs(montgomery, size), 0, state, 0, size);
+    }
+
+    @Override
+    public BigInteger getState() {
+        reduceState();
+        BigInteger x = BigInteger.ZERO;
+        for (int i = size - 1; i >= 0; i--) {
+            x = x.shiftLeft(32).or(BigInteger.valueOf(product[size + i]));
+        }
+        return x;
+    }
+
+    /**
+     * state = state^2 mod n: schoolbook squaring that computes every cross product once,
+     * followed by Montgomery reduction of the double-width product.
+     */
+    @Override
+    public void square() {
+        long[] t = product;
+        for (int i = 0; i < t.length; i++) {
+            t[i] = 0;
+        }
+        for (int i = 0; i < size - 1; i++) {
+            long a = state[i];
+            long c = 0;
+            for (int j = i + 1; j < size; j++) {
+                long v = t[i + j] + state[j] * a + c;
+                t[i + j] = v & MASK;
+                c = v >>> 32;
+            }
+            t[i + size] = c;
+        }
+        long c = 0;
+        for (int i = 0; i < 2 * size; i++) {
+            long v = (t[i] << 1) | c;
+            t[i] = v & MASK;
+            c = v >>> 32;
+        }
+        c = 0;
+        for (int i = 0; i < size; i++) {
+            long sq = state[i] * state[i];
+            long v = t[2 * i] + (sq & MASK) + c;
+            t[2 * i] = v & MASK;
+            v = t[2 * i + 1] + (sq >>> 32) + (v >>> 32);
+            t[2 * i + 1] = v & MASK;
+            c = v >>> 32;
+        }
+        reduce(t);
+        System.arraycopy(t, size, state, 0, size);
+    }
+
+    /**
+     * Low 32 bits of the state converted back from Montgomery form.
+     */
+    @Override
+    public int lowBits() {
+        reduceState();
+        return (int) product[size];
+    }
+
+    /**
+     * Copies the state converted back from Montgomery form into {@code digits[0..size)}.
+     */
+    void getState(long[] digits) {
+        reduceState();
+        System.arraycopy(product, size, digits, 0, size);
+    }
+
+    /**
+     * out = a * b / R mod n for digits a, b below n, so with b = c * R mod n the result is a * c mod n.
+     * Uses the squaring buffer, {@code out} may be one of the arguments.
+     */
+    void multiply(long[] a, long[] b, long[] out) {
+        long[] t = product;
+        for (int i = 0; i < t.length; i++) {
+            t[i] = 0;
+        }
+        for (int i = 0; i < size; i++) {
+            long x = a[i];
+            long c = 0;
+            for (int j = 0; j < size; j++) {
+                long v = t[i + j] + x * b[j] + c;
+                t[i + j] = v & MASK;
+                c = v >>> 32;
+            }
+            t[i + size] = c;
+        }
+        reduce(t);
+        System.arraycopy(t, size, out, 0, size);
+    }
+
+    private void reduceState() {
+        long[] t = product;
+        System.arraycopy(state, 0, t, 0, size);
+        for (int i = size; i < t.length; i++) {
+            t[i] = 0;
+        }
+        reduce(t);
+    }
+
+    /**
+     * Montgomery reduction of the double-width value in {@code t} into {@code t[size..2 * size)}.
+     */
+    private void reduce(long[] t) {
+        for (int i = 0; i < size; i++) {
+            long m = (t[i] * nInv) & MASK;
+            long c = 0;
+            for (int j = 0; j < size; j++) {
+                long v = t[i + j] + m * n[j] + c;
+                t[i + j] = v & MASK;
+                c = v >>> 32;
+            }
+            for (int k = i + size; c != 0; k++) {
+                long v = t[k] + c;
+                t[k] = v & MASK;
+                c = v >>> 32;
+            }
+        }
+        if (t[2 * size] != 0 || compare(t, size) >= 0) {
+            subtract(t, size);
+        }
+    }
+
+    private int compare(long[] a, int offset) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (a[offset + i] != n[i]) {
+                return a[offset + i] < n[i] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    private void subtract(long[] a, int offset) {
+        long borrow = 0;
+        for (int i = 0; i < size; i++) {
+            long v = a[offset + i] - n[i] - borrow;
+            a[offset + i] = v & MASK;
+            borrow = v < 0 ? 1 : 0;
+        }
+        a[offset + size] = 0;
+    }
+
+    private static long negativeInverse(long n0) {
+        // Newton iteration, every step doubles the number of correct low bits
+        long inv = 1;
+        for (int i = 0; i < 5; i++) {
+            inv = inv * (2 - n0 * inv);
+        }
+        return -inv & MASK;
+    }
+
+    static long[] toLimbs(BigInteger x, int size) {
+        long[] limbs = new long[size];
+        for (int i = 0; i < size; i++) {
+            limbs[i] = x.shiftRight(32 * i).longValue() & MASK;
+        }
+        return limbs;
+    }
+}
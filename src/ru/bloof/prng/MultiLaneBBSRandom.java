@@ -0,0 +1,107 @@
+package ru.bloof.prng;
+
+import ru.bloof.metrics.Events;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * Several BBS generators over one modulus, each with its own seed, squared together by a lockstep engine that
+ * keeps more of the CPU busy than one long chain of squarings. Every step takes {@code bitsPerStep} bits from
+ * lane 0, then from lane 1 and so on, so lane k on its own gives the same bits as a {@link BBSRandom} with the
+ * same seed. Not thread-safe.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class MultiLaneBBSRandom extends Random {
+    private final int bitsPerStep;
+    private final MultiLaneSquarer engine;
+    private final int[] outputs;
+    private int lane;
+    private int buffer, buffered;
+
+    /**
+     * @param lanes number of generators, a multiple of 4, every one seeded from {@code seedSource} in turn
+     */
+    public MultiLaneBBSRandom(BlumModulus modulus, Random seedSource, int bitsPerStep, int lanes) {
+        BBSRandom.checkBitsPerStep(modulus.bitLength(), bitsPerStep);
+        this.bitsPerStep = bitsPerStep;
+        BigInteger n = modulus.getN();
+        engine = new MultiLaneSquarer(n, lanes);
+        byte[] seed = new byte[(modulus.bitLength() + 7) / 8];
+        long start = System.nanoTime();
+        for (int k = 0; k < lanes; k++) {
+            seedSource.nextBytes(seed);
+            engine.setState(k, new BigInteger(1, seed).mod(n));
+        }
+        Events.seeded(seedSource.getClass().getName(), lanes * seed.length, start);
+        outputs = new int[lanes];
+        lane = lanes;
+    }
+
+    public int getBitsPerStep() {
+        return bitsPerStep;
+    }
+
+    public int getLanes() {
+        return outputs.length;
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) nextBits(bits);
+    }
+
+    @Override
+    public long nextLong() {
+        return nextBits(64);
+    }
+
+    /**
+     * Fills the array with the same bytes as {@link Random#nextBytes(byte[])}: consecutive {@code nextInt()}
+     * values, each stored low byte first and the last one cut short, taken 64 bits at a time.
+     */
+    @Override
+    public void nextBytes(byte[] bytes) {
+        int i = 0;
+        for (int words = bytes.length / 8; words > 0; words--) {
+            long v = nextBits(64);
+            for (int k = 0, first = (int) (v >>> 32); k < 4; k++, first >>>= 8) {
+                bytes[i++] = (byte) first;
+            }
+            for (int k = 0, second = (int) v; k < 4; k++, second >>>= 8) {
+                bytes[i++] = (byte) second;
+            }
+        }
+        while (i < bytes.length) {
+            int v = (int) nextBits(32);
+            for (int k = Math.min(bytes.length - i, 4); k > 0; k--, v >>>= 8) {
+                bytes[i++] = (byte) v;
+            }
+        }
+    }
+
+    /**
+     * Takes the next {@code bits} (at most 64) output bits, the earliest one becoming the highest bit.
+     */
+    private long nextBits(int bits) {
+        long result = 0;
+        while (bits > 0) {
+            if (buffered == 0) {
+                if (lane == outputs.length) {
+                    engine.squareAndGetLowBits(outputs);
+                    lane = 0;
+                    BBSRandom.SQUARINGS.add(outputs.length);
+                    BBSRandom.BITS.add(outputs.length * bitsPerStep);
+                }
+                buffer = outputs[lane++];
+                buffered = bitsPerStep;
+            }
+            int take = Math.min(bits, buffered);
+            buffered -= take;
+            result = (result << take) | ((buffer >>> buffered) & ((1 << take) - 1));
+            bits -= take;
+        }
+        return result;
+    }
+}
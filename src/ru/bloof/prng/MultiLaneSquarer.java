@@ -0,0 +1,224 @@
+package ru.bloof.prng;
+
+import java.math.BigInteger;
+
+/**
+ * Repeated modular squaring of several independent values in Montgomery form, all squared in lockstep.
+ * <p>
+ * Digits are {@code w} bits wide, 26 to 28 depending on the modulus size, rather than the 32 bits of
+ * {@link MontgomerySquarer}: every column of the product is summed in a plain {@code long} accumulator with
+ * room for all of its products, so the inner loops are a multiply and an add with no carry handling. The
+ * reduction is interleaved with the squaring column by column, and R = 2^(w * size) is above 4n, which keeps
+ * the state below 2n without the final subtraction. Converting a state back from Montgomery form then gives
+ * the exact value, and its low digit is ready after half of that reduction.
+ * <p>
+ * Lanes are squared in groups of {@link #WIDTH}, a group keeping digit i of its lane k at index
+ * {@code i * WIDTH + k}, so every loop step does the same work for four independent accumulators.
+ * Not thread-safe.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+final class MultiLaneSquarer {
+    static final int WIDTH = 4;
+    private final BigInteger modulus;
+    private final int w;
+    private final long mask;
+    private final int size;
+    private final long[] n;
+    private final long nInv;
+    private final long[][] states;
+    private final long[] m;
+    private final long[] reduced;
+
+    MultiLaneSquarer(BigInteger modulus, int lanes) {
+        if (modulus.signum() <= 0 || !modulus.testBit(0)) {
+            throw new IllegalArgumentException("Modulus must be positive and odd");
+        }
+        if (lanes < WIDTH || lanes % WIDTH != 0) {
+            throw new IllegalArgumentException("Number of lanes must be a positive multiple of " + WIDTH + ": "
+                    + lanes);
+        }
+        this.modulus = modulus;
+        // a column sums at most 2 * size products below 2^(2w) plus a carry, which must fit into 64 bits
+        int width = 28;
+        while (digits(modulus.bitLength(), width) + 1 > 1L << (63 - 2 * width)) {
+            width--;
+        }
+        w = width;
+        mask = (1L << w) - 1;
+        size = digits(modulus.bitLength(), w);
+        n = toDigits(modulus);
+        nInv = modulus.modInverse(BigInteger.ONE.shiftLeft(w)).negate().longValue() & mask;
+        states = new long[lanes / WIDTH][size * WIDTH];
+        m = new long[size * WIDTH];
+        reduced = new long[size * WIDTH];
+    }
+
+    /**
+     * Digits of width w needed for R = 2^(w * digits) > 4n.
+     */
+    private static int digits(int bits, int w) {
+        return (bits + 2 + w - 1) / w;
+    }
+
+    int lanes() {
+        return states.length * WIDTH;
+    }
+
+    void setState(int lane, BigInteger x) {
+        long[] digits = toDigits(x.mod(modulus).shiftLeft(w * size).mod(modulus));
+        long[] state = states[lane / WIDTH];
+        for (int i = 0; i < size; i++) {
+            state[i * WIDTH + lane % WIDTH] = digits[i];
+        }
+    }
+
+    BigInteger getState(int lane) {
+        reduce(states[lane / WIDTH], size);
+        BigInteger x = BigInteger.ZERO;
+        for (int i = size - 1; i >= 0; i--) {
+            x = x.shiftLeft(w).or(BigInteger.valueOf(reduced[i * WIDTH + lane % WIDTH]));
+        }
+        return x;
+    }
+
+    /**
+     * Squares every lane and stores the low w bits of the new values, converted back from Montgomery form.
+     */
+    void squareAndGetLowBits(int[] out) {
+        for (int g = 0; g < states.length; g++) {
+            long[] state = states[g];
+            square(state);
+            reduce(state, 1);
+            for (int k = 0; k < WIDTH; k++) {
+                out[g * WIDTH + k] = (int) reduced[k];
+            }
+        }
+    }
+
+    /**
+     * s = s^2 / R mod n, every column of the square summed together with the multiples of n that clear it.
+     * The digits of the result replace digits of s that no later column reads.
+     */
+    private void square(long[] s) {
+        long a0 = 0, a1 = 0, a2 = 0, a3 = 0;
+        for (int i = 0; i < 2 * size - 1; i++) {
+            int from = Math.max(0, i - size + 1);
+            long q0 = 0, q1 = 0, q2 = 0, q3 = 0;
+            for (int j = from, k = i - from; j < k; j++, k--) {
+                int x = j * WIDTH, y = k * WIDTH;
+                q0 += s[x] * s[y];
+                q1 += s[x + 1] * s[y + 1];
+                q2 += s[x + 2] * s[y + 2];
+                q3 += s[x + 3] * s[y + 3];
+            }
+            a0 += q0 << 1;
+            a1 += q1 << 1;
+            a2 += q2 << 1;
+            a3 += q3 << 1;
+            if ((i & 1) == 0) {
+                int x = (i >> 1) * WIDTH;
+                a0 += s[x] * s[x];
+                a1 += s[x + 1] * s[x + 1];
+                a2 += s[x + 2] * s[x + 2];
+                a3 += s[x + 3] * s[x + 3];
+            }
+            int to = Math.min(i, size);
+            for (int j = from; j < to; j++) {
+                long nk = n[i - j];
+                int x = j * WIDTH;
+                a0 += m[x] * nk;
+                a1 += m[x + 1] * nk;
+                a2 += m[x + 2] * nk;
+                a3 += m[x + 3] * nk;
+            }
+            int x = (i < size ? i : i - size) * WIDTH;
+            if (i < size) {
+                long m0 = (a0 * nInv) & mask, m1 = (a1 * nInv) & mask;
+                long m2 = (a2 * nInv) & mask, m3 = (a3 * nInv) & mask;
+                m[x] = m0;
+                m[x + 1] = m1;
+                m[x + 2] = m2;
+                m[x + 3] = m3;
+                long n0 = n[0];
+                a0 += m0 * n0;
+                a1 += m1 * n0;
+                a2 += m2 * n0;
+                a3 += m3 * n0;
+            } else {
+                s[x] = a0 & mask;
+                s[x + 1] = a1 & mask;
+                s[x + 2] = a2 & mask;
+                s[x + 3] = a3 & mask;
+            }
+            a0 >>>= w;
+            a1 >>>= w;
+            a2 >>>= w;
+            a3 >>>= w;
+        }
+        int x = (size - 1) * WIDTH;
+        s[x] = a0;
+        s[x + 1] = a1;
+        s[x + 2] = a2;
+        s[x + 3] = a3;
+    }
+
+    /**
+     * Lowest {@code count} digits of s / R mod n into {@link #reduced}. With s below 2n and R above 4n the
+     * result is below n + 1, and it cannot be n for a state coprime to n, so it needs no final subtraction.
+     */
+    private void reduce(long[] s, int count) {
+        long a0 = 0, a1 = 0, a2 = 0, a3 = 0;
+        for (int i = 0; i < size + count; i++) {
+            int from = Math.max(0, i - size + 1);
+            int to = Math.min(i, size);
+            if (i < size) {
+                int x = i * WIDTH;
+                a0 += s[x];
+                a1 += s[x + 1];
+                a2 += s[x + 2];
+                a3 += s[x + 3];
+            }
+            for (int j = from; j < to; j++) {
+                long nk = n[i - j];
+                int x = j * WIDTH;
+                a0 += m[x] * nk;
+                a1 += m[x + 1] * nk;
+                a2 += m[x + 2] * nk;
+                a3 += m[x + 3] * nk;
+            }
+            if (i < size) {
+                int x = i * WIDTH;
+                long m0 = (a0 * nInv) & mask, m1 = (a1 * nInv) & mask;
+                long m2 = (a2 * nInv) & mask, m3 = (a3 * nInv) & mask;
+                m[x] = m0;
+                m[x + 1] = m1;
+                m[x + 2] = m2;
+                m[x + 3] = m3;
+                long n0 = n[0];
+                a0 += m0 * n0;
+                a1 += m1 * n0;
+                a2 += m2 * n0;
+                a3 += m3 * n0;
+            } else {
+                int x = (i - size) * WIDTH;
+                reduced[x] = a0 & mask;
+                reduced[x + 1] = a1 & mask;
+                reduced[x + 2] = a2 & mask;
+                reduced[x + 3] = a3 & mask;
+            }
+            a0 >>>= w;
+            a1 >>>= w;
+            a2 >>>= w;
+            a3 >>>= w;
+        }
+    }
+
+    private long[] toDigits(BigInteger x) {
+        long[] digits = new long[size];
+        for (int i = 0; i < size; i++) {
+            digits[i] = x.shiftRight(w * i).longValue() & mask;
+        }
+        return digits;
+    }
+}
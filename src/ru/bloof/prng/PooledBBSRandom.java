@@ -0,0 +1,347 @@
+package ru.bloof.prng;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Thread-safe {@link Random} served from a ring of blocks that background workers fill with BBS output.
+ * <p>
+ * Every worker owns a generator split off the root. Readers take a whole block by bumping the read index
+ * and then consume it from a thread-local copy, so the squaring cost stays off the caller's thread while
+ * the pool is not drained. Workers stop at the high watermark and resume once readers bring the pool
+ * down to the low one.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class PooledBBSRandom extends Random {
+    private static final long RELEASE_BACKOFF_NANOS = 20_000;
+
+    public enum DrainPolicy {
+        /**
+         * Wait for the workers when no block is ready.
+         */
+        BLOCK,
+        /**
+         * Throw {@link IllegalStateException} when no block is ready.
+         */
+        FAIL_FAST
+    }
+
+    private final int blockSize;
+    private final int capacity;
+    private final int lowWatermark, highWatermark;
+    private final DrainPolicy policy;
+    private final byte[][] blocks;
+    /*
+     * Slot i holding block k is free for writing when sequence == k and ready for reading when
+     * sequence == k + 1, after which it becomes free again with sequence k + capacity.
+     */
+    private final AtomicLongArray sequences;
+    private final AtomicLong writeIndex = new AtomicLong();
+    private final AtomicLong readIndex = new AtomicLong();
+    private final ThreadLocal<Cursor> cursor;
+    private final List<Thread> workers = new ArrayList<>();
+    private final Object monitor = new Object();
+    private volatile boolean refilling = true;
+    private volatile int waitingReaders;
+    private volatile boolean closed;
+    private final LongAdder blocksProduced = new LongAdder();
+    private final LongAdder fillNanos = new LongAdder();
+    private final LongAdder drainedReads = new LongAdder();
+    private final boolean initialized;
+
+    private PooledBBSRandom(Builder builder) {
+        blockSize = builder.blockSize;
+        capacity = builder.capacity;
+        lowWatermark = builder.lowWatermark;
+        highWatermark = builder.highWatermark;
+        policy = builder.policy;
+        blocks = new byte[capacity][blockSize];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        cursor = ThreadLocal.withInitial(() -> new Cursor(blockSize));
+        for (int i = 0; i < builder.workers; i++) {
+            SplittableBBSRandom rng;
+            synchronized (builder.root) {
+                rng = builder.root.split();
+            }
+            Thread worker = new Thread(() -> fill(rng), "bbs-pool-worker-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+        }
+        workers.forEach(Thread::start);
+        initialized = true;
+    }
+
+    public static Builder builder(SplittableBBSRandom root) {
+        return new Builder(root);
+    }
+
+    /**
+     * Number of blocks ready or being filled.
+     */
+    public int getDepth() {
+        return (int) (writeIndex.get() - readIndex.get());
+    }
+
+    public long getBlocksProduced() {
+        return blocksProduced.sum();
+    }
+
+    public long getBlocksConsumed() {
+        return readIndex.get();
+    }
+
+    /**
+     * Times a read found the pool empty and had to wait or fail according to the drain policy.
+     */
+    public long getDrainedReads() {
+        return drainedReads.sum();
+    }
+
+    /**
+     * Bytes per second the workers produce while they are filling, summed over all workers.
+     */
+    public double getRefillRate() {
+        long nanos = fillNanos.sum();
+        return nanos == 0 ? 0 : blocksProduced.sum() * (double) blockSize * workers.size() * 1e9 / nanos;
+    }
+
+    public void close() {
+        closed = true;
+        synchronized (monitor) {
+            monitor.notifyAll();
+        }
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Seeds come from the root generator, so setting one is not supported.
+     */
+    @Override
+    public void setSeed(long seed) {
+        // called once by the Random constructor
+        if (initialized) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Override
+    protected int next(int bits) {
+        Cursor c = cursor.get();
+        if (c.position > blockSize - 4) {
+            int v = 0;
+            for (int i = 0; i < 4; i++) {
+                v = (v << 8) | (nextByte(c) & 0xFF);
+            }
+            return v >>> (32 - bits);
+        }
+        byte[] d = c.data;
+        int p = c.position;
+        c.position = p + 4;
+        int v = (d[p] & 0xFF) << 24 | (d[p + 1] & 0xFF) << 16 | (d[p + 2] & 0xFF) << 8 | (d[p + 3] & 0xFF);
+        return v >>> (32 - bits);
+    }
+
+    @Override
+    public void nextBytes(byte[] bytes) {
+        Cursor c = cursor.get();
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (c.position == blockSize) {
+                take(c.data);
+                c.position = 0;
+            }
+            int length = Math.min(bytes.length - offset, blockSize - c.position);
+            System.arraycopy(c.data, c.position, bytes, offset, length);
+            c.position += length;
+            offset += length;
+        }
+    }
+
+    private byte nextByte(Cursor c) {
+        if (c.position == blockSize) {
+            take(c.data);
+            c.position = 0;
+        }
+        return c.data[c.position++];
+    }
+
+    private void take(byte[] destination) {
+        boolean drained = false;
+        while (true) {
+            long index = readIndex.get();
+            int slot = (int) (index % capacity);
+            long sequence = sequences.get(slot);
+            if (sequence == index + 1) {
+                if (readIndex.compareAndSet(index, index + 1)) {
+                    System.arraycopy(blocks[slot], 0, destination, 0, blockSize);
+                    sequences.set(slot, index + capacity);
+                    if (!refilling && writeIndex.get() - index - 1 <= lowWatermark) {
+                        wakeWorkers();
+                    }
+                    return;
+                }
+            } else if (sequence <= index) {
+                if (!drained) {
+                    drainedReads.increment();
+                    drained = true;
+                }
+                if (policy == DrainPolicy.FAIL_FAST) {
+                    wakeWorkers();
+                    throw new IllegalStateException("BBS pool is drained");
+                }
+                awaitBlock(slot, index);
+            }
+        }
+    }
+
+    private void wakeWorkers() {
+        synchronized (monitor) {
+            refilling = true;
+            monitor.notifyAll();
+        }
+    }
+
+    private void awaitBlock(int slot, long index) {
+        if (closed) {
+            throw new IllegalStateException("BBS pool is closed");
+        }
+        synchronized (monitor) {
+            waitingReaders++;
+            try {
+                if (!refilling) {
+                    refilling = true;
+                    monitor.notifyAll();
+                }
+                if (sequences.get(slot) <= index && !closed) {
+                    monitor.wait(10);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for BBS pool", e);
+            } finally {
+                waitingReaders--;
+            }
+        }
+    }
+
+    private void fill(SplittableBBSRandom rng) {
+        try {
+            while (!closed) {
+                if (!refilling || getDepth() >= highWatermark) {
+                    synchronized (monitor) {
+                        refilling = false;
+                        while (!refilling && !closed) {
+                            monitor.wait();
+                        }
+                    }
+                    continue;
+                }
+                long index = writeIndex.get();
+                int slot = (int) (index % capacity);
+                long sequence = sequences.get(slot);
+                if (sequence < index) {
+                    // a reader is still copying the previous block out of the slot
+                    LockSupport.parkNanos(RELEASE_BACKOFF_NANOS);
+                    continue;
+                }
+                if (sequence != index || !writeIndex.compareAndSet(index, index + 1)) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                rng.nextBytes(blocks[slot]);
+                fillNanos.add(System.nanoTime() - start);
+                sequences.set(slot, index + 1);
+                blocksProduced.increment();
+                if (waitingReaders > 0) {
+                    synchronized (monitor) {
+                        monitor.notifyAll();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Cursor {
+        private final byte[] data;
+        private int position;
+
+        Cursor(int blockSize) {
+            data = new byte[blockSize];
+            position = blockSize;
+        }
+    }
+
+    public static class Builder {
+        private final SplittableBBSRandom root;
+        private int blockSize = 4096;
+        private int capacity = 64;
+        private int lowWatermark = 16;
+        private int highWatermark = 64;
+        private int workers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        private DrainPolicy policy = DrainPolicy.BLOCK;
+
+        private Builder(SplittableBBSRandom root) {
+            this.root = root;
+        }
+
+        public Builder blockSize(int blockSize) {
+            this.blockSize = blockSize;
+            return this;
+        }
+
+        /**
+         * Number of preallocated blocks in the ring.
+         */
+        public Builder capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        public Builder watermarks(int low, int high) {
+            this.lowWatermark = low;
+            this.highWatermark = high;
+            return this;
+        }
+
+        public Builder workers(int workers) {
+            this.workers = workers;
+            return this;
+        }
+
+        public Builder policy(DrainPolicy policy) {
+            this.policy = policy;
+            return this;
+        }
+
+        public PooledBBSRandom build() {
+            if (blockSize < 8 || capacity < 1 || workers < 1) {
+                throw new IllegalArgumentException("Block size must be at least 8, capacity and workers positive");
+            }
+            if (lowWatermark < 0 || lowWatermark >= highWatermark || highWatermark > capacity) {
+                throw new IllegalArgumentException("Watermarks must satisfy 0 <= low < high <= capacity");
+            }
+            return new PooledBBSRandom(this);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package ru.bloof.prng;
+
+import ru.bloof.metrics.Counter;
+import ru.bloof.metrics.Events;
+import ru.bloof.metrics.Metrics;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background thread that reseeds a live generator with entropy from a {@link DeviceRandom}, after a given number
+ * of output bits or a given time, whichever comes first.
+ * <p>
+ * Entropy is gathered in the background only as fast as the devices deliver it, so the generator never waits
+ * for input events. The new seed is the previous one hashed together with the fresh entropy, which never makes
+ * the seed weaker than it was, and is published with a single volatile write. The generator takes it over at
+ * its next output call and restarts its stream from it, see {@link BBSRandom#getPosition()}.
+ * <p>
+ * The volume trigger is checked by the generator itself, on the thread that produces the output, which wakes the
+ * reseeder up right away. Only the wait for device entropy, when the devices have none ready, is polled. A
+ * generator can have one reseeder at a time.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class Reseeder {
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final Counter RESEEDS = Metrics.counter("prng.reseeds");
+    private final BBSRandom generator;
+    private final DeviceRandom source;
+    private final long everyBits;
+    private final long everyNanos;
+    private final byte[] entropy;
+    private final BigInteger n;
+    private BigInteger seed;
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile boolean volumeDue;
+    private volatile int gathered;
+    private volatile long lastReseed = System.nanoTime();
+    private final LongAdder reseeds = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private volatile long lastLatencyNanos, maxLatencyNanos;
+
+    private Reseeder(Builder builder) {
+        generator = builder.generator;
+        source = builder.source;
+        everyBits = builder.everyBits;
+        everyNanos = builder.everyNanos;
+        entropy = new byte[builder.seedBytes];
+        n = generator.getN();
+        seed = generator.getOrigin();
+        thread = new Thread(this::run, "bbs-reseeder");
+        thread.setDaemon(true);
+        if (everyBits != Long.MAX_VALUE) {
+            generator.onReseedDue(everyBits, () -> {
+                volumeDue = true;
+                LockSupport.unpark(thread);
+            });
+        }
+        thread.start();
+    }
+
+    public static Builder builder(BBSRandom generator, DeviceRandom source) {
+        return new Builder(generator, source);
+    }
+
+    public long getReseeds() {
+        return reseeds.sum();
+    }
+
+    /**
+     * Time from a trigger firing to the new seed being published, for the last reseed.
+     */
+    public long getLastLatencyNanos() {
+        return lastLatencyNanos;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    public double getMeanLatencyNanos() {
+        long count = reseeds.sum();
+        return count == 0 ? 0 : latencyNanos.sum() / (double) count;
+    }
+
+    /**
+     * Entropy bytes gathered for the next reseed plus those the devices have conditioned and not yet handed out.
+     */
+    public long getEntropyBacklog() {
+        return gathered + source.getAvailableBytes();
+    }
+
+    /**
+     * Stops the background thread, the device source stays open.
+     */
+    public void close() {
+        closed = true;
+        if (everyBits != Long.MAX_VALUE) {
+            generator.onReseedDue(Long.MAX_VALUE, null);
+        }
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            long triggered = 0;
+            while (true) {
+                if (closed) {
+                    return;
+                }
+                if (triggered == 0 && isDue()) {
+                    triggered = System.nanoTime();
+                }
+                boolean took = gather();
+                if (triggered != 0 && gathered == entropy.length) {
+                    break;
+                }
+                if (!took) {
+                    LockSupport.parkNanos(this, POLL_NANOS);
+                }
+            }
+            seed = mix(seed, entropy, n);
+            // cleared first: the generator re-arms its trigger when it takes the seed over
+            volumeDue = false;
+            generator.reseed(seed);
+            gathered = 0;
+            long now = System.nanoTime();
+            lastReseed = now;
+            long latency = now - triggered;
+            reseeds.increment();
+            latencyNanos.add(latency);
+            lastLatencyNanos = latency;
+            maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+            RESEEDS.increment();
+            Events.reseeded(entropy.length, latency);
+        }
+    }
+
+    private boolean isDue() {
+        if (generator.isReseedPending()) {
+            return false;
+        }
+        return volumeDue || System.nanoTime() - lastReseed >= everyNanos;
+    }
+
+    /**
+     * Takes what the devices have ready without waiting for more.
+     *
+     * @return whether anything was taken
+     */
+    private boolean gather() {
+        int wanted = Math.min(entropy.length - gathered, source.getAvailableBytes());
+        if (wanted == 0) {
+            return false;
+        }
+        byte[] bytes = new byte[wanted];
+        source.nextBytes(bytes);
+        System.arraycopy(bytes, 0, entropy, gathered, wanted);
+        gathered += wanted;
+        return true;
+    }
+
+    /**
+     * SHA-256 of a counter, the previous seed and the entropy, repeated until there are 16 bytes more than n
+     * has so that reducing modulo n leaves no noticeable bias.
+     */
+    static BigInteger mix(BigInteger seed, byte[] entropy, BigInteger n) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        byte[] previous = seed.toByteArray();
+        byte[] out = new byte[(n.bitLength() + 7) / 8 + 16];
+        for (int counter = 0, offset = 0; offset < out.length; counter++) {
+            digest.update(new byte[]{(byte) (counter >>> 24), (byte) (counter >>> 16), (byte) (counter >>> 8),
+                    (byte) counter});
+            digest.update(previous);
+            digest.update(entropy);
+            byte[] block = digest.digest();
+            System.arraycopy(block, 0, out, offset, Math.min(block.length, out.length - offset));
+            offset += block.length;
+        }
+        return new BigInteger(1, out).mod(n);
+    }
+
+    public static class Builder {
+        private final BBSRandom generator;
+        private final DeviceRandom source;
+        private long everyBits = Long.MAX_VALUE;
+        private long everyNanos = Long.MAX_VALUE;
+        private int seedBytes = 32;
+
+        private Builder(BBSRandom generator, DeviceRandom source) {
+            this.generator = generator;
+            this.source = source;
+        }
+
+        /**
+         * Reseeds once the generator has output this many bits since the last reseed.
+         */
+        public Builder everyBits(long bits) {
+            this.everyBits = bits;
+            return this;
+        }
+
+        /**
+         * Reseeds once this much time has passed since the last reseed.
+         */
+        public Builder every(long time, TimeUnit unit) {
+            this.everyNanos = unit.toNanos(time);
+            return this;
+        }
+
+        /**
+         * Device entropy mixed into every new seed.
+         */
+        public Builder seedBytes(int seedBytes) {
+            this.seedBytes = seedBytes;
+            return this;
+        }
+
+        public Reseeder build() {
+            if (everyBits <= 0 || everyNanos <= 0 || seedBytes < 1) {
+                throw new IllegalArgumentException("Triggers and seed size must be positive");
+            }
+            if (everyBits == Long.MAX_VALUE && everyNanos == Long.MAX_VALUE) {
+                throw new IllegalStateException("Neither an output volume nor a time trigger is set");
+            }
+            return new Reseeder(this);
+        }
+    }
+}
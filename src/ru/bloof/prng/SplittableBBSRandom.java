@@ -0,0 +1,237 @@
+package ru.bloof.prng;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * BBS generator that keeps the factors of its modulus, so it can jump ahead in its own stream and
+ * derive independent generators over the same modulus.
+ * <p>
+ * A single instance is still not thread-safe: give every thread its own {@link #split()}.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class SplittableBBSRandom extends BBSRandom {
+    private static final int STREAM_CHARACTERISTICS = Spliterator.SIZED | Spliterator.SUBSIZED
+            | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+    private final BlumModulus modulus;
+
+    public SplittableBBSRandom(BlumModulus modulus, Random seedSource, int bitsPerStep) {
+        this(modulus, seedSource, bitsPerStep, false);
+    }
+
+    /**
+     * @param crt square modulo p and q separately, see {@link BBSRandom.Builder#crt()}
+     */
+    public SplittableBBSRandom(BlumModulus modulus, Random seedSource, int bitsPerStep, boolean crt) {
+        super(checkFactors(modulus), seedSource, bitsPerStep, crt);
+        this.modulus = modulus;
+    }
+
+    SplittableBBSRandom(GeneratorSnapshot snapshot) {
+        super(snapshot);
+        modulus = checkFactors(snapshot.getModulus());
+    }
+
+    private SplittableBBSRandom(SplittableBBSRandom other) {
+        super(other);
+        modulus = other.modulus;
+    }
+
+    private static BlumModulus checkFactors(BlumModulus modulus) {
+        if (!modulus.hasFactors()) {
+            throw new IllegalArgumentException("Splittable generator needs the factors of the modulus");
+        }
+        return modulus;
+    }
+
+    public BlumModulus getModulus() {
+        return modulus;
+    }
+
+    /**
+     * New generator over the same modulus, seeded with output of this one.
+     */
+    public SplittableBBSRandom split() {
+        return new SplittableBBSRandom(modulus, this, getBitsPerStep(), isCrt());
+    }
+
+    /**
+     * Generator that continues the same stream independently of this one, for producing different parts
+     * of one stream in parallel together with {@link #seek(long)}.
+     */
+    public SplittableBBSRandom copy() {
+        return new SplittableBBSRandom(this);
+    }
+
+    /**
+     * Skips {@code bits} output bits without computing them.
+     */
+    public void jump(long bits) {
+        if (bits < 0) {
+            throw new IllegalArgumentException("Jump distance must be non-negative: " + bits);
+        }
+        skip(bits, modulus);
+    }
+
+    /**
+     * Moves to output bit {@code bit} counted from seeding, backwards as well as forwards, in
+     * O(log bit + log n) multiplications.
+     */
+    public void seek(long bit) {
+        if (bit < 0) {
+            throw new IllegalArgumentException("Position must be non-negative: " + bit);
+        }
+        seek(bit, modulus);
+    }
+
+    public void nextBytesParallel(byte[] bytes) {
+        nextBytesParallel(bytes, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Produces exactly what {@link #nextBytes(byte[])} would, with every chunk of the array filled
+     * by its own copy of the generator jumped to the chunk start.
+     */
+    public void nextBytesParallel(byte[] bytes, ForkJoinPool pool) {
+        // a chunk must be long enough to pay for the jump, which costs about log2(n) multiplications
+        int minChunk = 2 * modulus.bitLength() * getBitsPerStep();
+        // whole ints, since nextBytes spends 32 bits on a partial one
+        int chunk = (Math.max(minChunk, bytes.length / (4 * pool.getParallelism()) + 1) + 3) & ~3;
+        if (bytes.length <= chunk) {
+            nextBytes(bytes);
+            return;
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int from = 0; from < bytes.length; from += chunk) {
+            int offset = from;
+            int length = Math.min(chunk, bytes.length - from);
+            SplittableBBSRandom copy = new SplittableBBSRandom(this);
+            tasks.add(ForkJoinTask.adapt(() -> {
+                copy.jump(8L * offset);
+                copy.nextBytes(ByteBuffer.wrap(bytes, offset, length));
+            }));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        jump(32L * ((bytes.length + 3) / 4));
+    }
+
+    /*
+     * Unlike the sequential streams of BBSRandom these split: every part of a parallel stream gets
+     * its own generator, the root one being split off from this instance when the stream is created.
+     */
+
+    @Override
+    public IntStream ints(long streamSize) {
+        checkSize(streamSize);
+        return StreamSupport.intStream(new IntsSpliterator(split(), 0, streamSize), false);
+    }
+
+    @Override
+    public LongStream longs(long streamSize) {
+        checkSize(streamSize);
+        return StreamSupport.longStream(new LongsSpliterator(split(), 0, streamSize), false);
+    }
+
+    private static void checkSize(long streamSize) {
+        if (streamSize < 0) {
+            throw new IllegalArgumentException("Size must be non-negative: " + streamSize);
+        }
+    }
+
+    private static final class IntsSpliterator implements Spliterator.OfInt {
+        private final SplittableBBSRandom rng;
+        private long index;
+        private final long fence;
+
+        IntsSpliterator(SplittableBBSRandom rng, long index, long fence) {
+            this.rng = rng;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public IntsSpliterator trySplit() {
+            long middle = (index + fence) >>> 1;
+            if (middle <= index) {
+                return null;
+            }
+            IntsSpliterator prefix = new IntsSpliterator(rng.split(), index, middle);
+            index = middle;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (index >= fence) {
+                return false;
+            }
+            index++;
+            action.accept(rng.nextInt());
+            return true;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return STREAM_CHARACTERISTICS;
+        }
+    }
+
+    private static final class LongsSpliterator implements Spliterator.OfLong {
+        private final SplittableBBSRandom rng;
+        private long index;
+        private final long fence;
+
+        LongsSpliterator(SplittableBBSRandom rng, long index, long fence) {
+            this.rng = rng;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public LongsSpliterator trySplit() {
+            long middle = (index + fence) >>> 1;
+            if (middle <= index) {
+                return null;
+            }
+            LongsSpliterator prefix = new LongsSpliterator(rng.split(), index, middle);
+            index = middle;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (index >= fence) {
+                return false;
+            }
+            index++;
+            action.accept(rng.nextLong());
+            return true;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return STREAM_CHARACTERISTICS;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package ru.bloof.prng;
+
+import java.math.BigInteger;
+
+/**
+ * Repeated squaring of the BBS state modulo n.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+interface SquaringEngine {
+    /**
+     * state = state^2 mod n.
+     */
+    void square();
+
+    /**
+     * Low 32 bits of the state.
+     */
+    int lowBits();
+
+    BigInteger getState();
+
+    void setState(BigInteger x);
+
+    /**
+     * Engine with the same modulus and state that continues independently of this one.
+     */
+    SquaringEngine copy();
+}
@@ -0,0 +1,147 @@
+package ru.bloof.prng;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Thread-safe {@link Random} view over per-thread BBS generators sharing one modulus.
+ * <p>
+ * Every thread, virtual ones included, gets its own generator the first time it uses the facade. Rather than
+ * splitting every one off the root, which draws a modulus worth of root output under the root's lock, the facade
+ * splits a base generator off the root once per {@link #SEGMENTS} threads and gives every thread its own
+ * segment of the base stream, 2^48 steps long, found with a jump outside of any lock. Thread start-up therefore
+ * only synchronizes on the root once in a while. Generation takes the monitor of the thread's own generator on
+ * every call, like any {@link BBSRandom} output, but as no other thread uses that generator the monitor is
+ * never contended.
+ *
+ * @author <a href="mailto:blloof@gmail.com">Oleg Larionov</a>
+ */
+public class ThreadLocalBBSRandom extends Random {
+    static final int SEGMENT_SHIFT = 48;
+    static final long SEGMENTS = 1L << (63 - SEGMENT_SHIFT);
+    private final SplittableBBSRandom root;
+    private final ThreadLocal<SplittableBBSRandom> local = ThreadLocal.withInitial(this::split);
+    private final boolean initialized;
+    private volatile Base base;
+
+    public ThreadLocalBBSRandom(SplittableBBSRandom root) {
+        this.root = root;
+        initialized = true;
+    }
+
+    private SplittableBBSRandom split() {
+        while (true) {
+            Base b = base;
+            if (b != null) {
+                long segment = b.next.getAndIncrement();
+                if (segment < SEGMENTS) {
+                    SplittableBBSRandom child = b.generator.copy();
+                    child.restart(b.generator.getModulus().jump(b.generator.getOrigin(), segment << SEGMENT_SHIFT));
+                    return child;
+                }
+            }
+            synchronized (root) {
+                if (base == b) {
+                    base = new Base(root.split());
+                }
+            }
+        }
+    }
+
+    /**
+     * Generator of the calling thread, must not be handed to other threads.
+     */
+    public SplittableBBSRandom current() {
+        return local.get();
+    }
+
+    /**
+     * Seeds come from the root generator, so setting one is not supported.
+     */
+    @Override
+    public void setSeed(long seed) {
+        // called once by the Random constructor
+        if (initialized) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Override
+    protected int next(int bits) {
+        return current().next(bits);
+    }
+
+    @Override
+    public void nextBytes(byte[] bytes) {
+        current().nextBytes(bytes);
+    }
+
+    @Override
+    public int nextInt() {
+        return current().nextInt();
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return current().nextInt(bound);
+    }
+
+    @Override
+    public long nextLong() {
+        return current().nextLong();
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return current().nextBoolean();
+    }
+
+    @Override
+    public float nextFloat() {
+        return current().nextFloat();
+    }
+
+    @Override
+    public double nextDouble() {
+        return current().nextDouble();
+    }
+
+    @Override
+    public double nextGaussian() {
+        return current().nextGaussian();
+    }
+
+    @Override
+    public IntStream ints(long streamSize) {
+        return current().ints(streamSize);
+    }
+
+    @Override
+    public IntStream ints() {
+        return current().ints();
+    }
+
+    @Override
+    public LongStream longs(long streamSize) {
+        return current().longs(streamSize);
+    }
+
+    @Override
+    public LongStream longs() {
+        return current().longs();
+    }
+
+    /**
+     * Generator the segments are taken from, never used for output itself so that threads may copy it at once.
+     */
+    private static final class Base {
+        final SplittableBBSRandom generator;
+        final AtomicLong next = new AtomicLong();
+
+        Base(SplittableBBSRandom generator) {
+            this.generator = generator;
+        }
+    }
+}